@@ -6,6 +6,7 @@ import com.squareup.moshi.JsonAdapter;
 import com.squareup.moshi.Moshi;
 import net.dean.jraw.RedditClient;
 import net.dean.jraw.databind.Enveloped;
+import net.dean.jraw.databind.Interned;
 import net.dean.jraw.databind.RedditModel;
 import net.dean.jraw.databind.UnixTime;
 import net.dean.jraw.references.CommentReference;
@@ -22,11 +23,11 @@ public abstract class Comment implements PublicContribution<CommentReference>, N
 
     @Override
     @NotNull
-    public abstract String getAuthor();
+    @Interned public abstract String getAuthor();
 
     @Nullable
     @Json(name = "author_flair_text")
-    public abstract String getAuthorFlairText();
+    @Interned public abstract String getAuthorFlairText();
 
     @Override
     @Json(name = "can_gild") public abstract boolean isGildable();
@@ -66,7 +67,7 @@ public abstract class Comment implements PublicContribution<CommentReference>, N
     @Json(name = "parent_id") public abstract String getParentFullName();
 
     @NotNull
-    @Json(name = "link_id") public abstract String getSubmissionFullName();
+    @Json(name = "link_id") @Interned public abstract String getSubmissionFullName();
 
     /** Gets the title of the parent link, or null if this comment is not being displayed outside of its own thread. */
     @Nullable
@@ -81,7 +82,11 @@ public abstract class Comment implements PublicContribution<CommentReference>, N
 
     @NotNull
     @Override
-    @Json(name = "subreddit_id") public abstract String getSubredditFullName();
+    @Interned public abstract String getSubreddit();
+
+    @NotNull
+    @Override
+    @Json(name = "subreddit_id") @Interned public abstract String getSubredditFullName();
 
     @Json(name = "subreddit_type") public abstract Subreddit.Access getSubredditType();
 
@@ -5,6 +5,7 @@ import com.squareup.moshi.Json;
 import com.squareup.moshi.JsonAdapter;
 import com.squareup.moshi.Moshi;
 import net.dean.jraw.RedditClient;
+import net.dean.jraw.databind.Interned;
 import net.dean.jraw.databind.RedditModel;
 import net.dean.jraw.databind.UnixTime;
 import net.dean.jraw.references.SubmissionReference;
@@ -18,11 +19,11 @@ import java.util.Date;
 @RedditModel
 public abstract class Submission implements PublicContribution<SubmissionReference>, Serializable {
     @Override
-    @Json(name = "author") public abstract String getAuthor();
+    @Json(name = "author") @Interned public abstract String getAuthor();
 
     /** Flair text to be displayed next to the author's name, if any */
     @Nullable
-    @Json(name = "author_flair_text") public abstract String getAuthorFlairText();
+    @Json(name = "author_flair_text") @Interned public abstract String getAuthorFlairText();
 
     /** Submissions are archived once they reach a certain age. At that point, they become unmodifiable */
     @Json(name = "archived") public abstract boolean isArchived();
@@ -46,7 +47,7 @@ public abstract class Submission implements PublicContribution<SubmissionReferen
      *
      * @see #isSelfPost()
      */
-    public abstract String getDomain();
+    @Interned public abstract String getDomain();
 
     @Override
     @Nullable
@@ -83,11 +84,11 @@ public abstract class Submission implements PublicContribution<SubmissionReferen
 
     /** Flair to display next to the Submission, if any */
     @Nullable
-    @Json(name = "link_flair_text") public abstract String getLinkFlairText();
+    @Json(name = "link_flair_text") @Interned public abstract String getLinkFlairText();
 
     /** CSS class of the flair displayed next to the submission, if any */
     @Nullable
-    @Json(name = "link_flair_css_class") public abstract String getLinkFlairCssClass();
+    @Json(name = "link_flair_css_class") @Interned public abstract String getLinkFlairCssClass();
 
     /** If the moderators/admins have prevented creating new comments on this submission */
     public abstract boolean isLocked();
@@ -124,10 +125,10 @@ public abstract class Submission implements PublicContribution<SubmissionReferen
     public abstract boolean isSpoiler();
 
     /** The subreddit where this submission was posted to */
-    public abstract String getSubreddit();
+    @Interned public abstract String getSubreddit();
 
     /** The fullname of {@link #getSubreddit()} */
-    @Json(name = "subreddit_id") public abstract String getSubredditFullName();
+    @Json(name = "subreddit_id") @Interned public abstract String getSubredditFullName();
 
     /** The suggested way to sort comments, if any */
     @Nullable
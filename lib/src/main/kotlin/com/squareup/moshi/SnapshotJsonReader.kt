@@ -0,0 +1,286 @@
+package com.squareup.moshi
+
+import net.dean.jraw.tree.CommentTreeSnapshot
+import okio.BufferedSource
+import java.math.BigDecimal
+
+/**
+ * Reads the JSON values in a [CommentTreeSnapshot] straight from their binary form. This lets the generated adapters
+ * create models from a snapshot without a Map or List being created for every value first.
+ *
+ * Arrays and objects are written along with their size, so the end of one never has to be read from the source. Values
+ * can be read one after another without the reader ever reaching the end of the document, which is how a snapshot
+ * mixes JSON values with the rest of its data.
+ *
+ * This is in Moshi's package because that's the only place JsonReader can be extended from.
+ */
+internal class SnapshotJsonReader(private val source: BufferedSource) : JsonReader() {
+    /** Every shared string in the order they were first written */
+    private val strings = ArrayList<String>()
+
+    /** How many elements or properties are left in each array or object on the stack */
+    private var remaining = IntArray(32)
+
+    /** The tag of the next value, or -1 if it hasn't been read yet */
+    private var peekedTag = -1
+
+    /** The next name or string value, if it had to be read before it was consumed */
+    private var peekedString: String? = null
+
+    init {
+        pushScope(JsonScope.EMPTY_DOCUMENT)
+    }
+
+    override fun beginArray() {
+        require(Token.BEGIN_ARRAY)
+        push(JsonScope.EMPTY_ARRAY, readVarint().toInt())
+    }
+
+    override fun endArray() {
+        require(Token.END_ARRAY)
+        pop()
+    }
+
+    override fun beginObject() {
+        require(Token.BEGIN_OBJECT)
+        push(JsonScope.EMPTY_OBJECT, readVarint().toInt())
+    }
+
+    override fun endObject() {
+        require(Token.END_OBJECT)
+        pop()
+    }
+
+    override fun hasNext(): Boolean {
+        val token = peek()
+        return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT
+    }
+
+    override fun peek(): Token {
+        val i = stackSize - 1
+        return when (scopes[i]) {
+            JsonScope.EMPTY_ARRAY, JsonScope.NONEMPTY_ARRAY ->
+                if (remaining[i] == 0) Token.END_ARRAY else valueToken()
+            JsonScope.EMPTY_OBJECT, JsonScope.NONEMPTY_OBJECT ->
+                if (remaining[i] == 0) Token.END_OBJECT else Token.NAME
+            JsonScope.DANGLING_NAME, JsonScope.EMPTY_DOCUMENT -> valueToken()
+            JsonScope.CLOSED -> throw IllegalStateException("JsonReader is closed")
+            else -> Token.END_DOCUMENT
+        }
+    }
+
+    override fun nextName(): String {
+        require(Token.NAME)
+        val name = peekedString ?: readString(source.readByte().toInt())
+        peekedString = null
+        pathNames[stackSize - 1] = name
+        scopes[stackSize - 1] = JsonScope.DANGLING_NAME
+        return name
+    }
+
+    override fun selectName(options: Options): Int {
+        if (peek() != Token.NAME) return -1
+        val name = peekedString ?: readString(source.readByte().toInt()).also { peekedString = it }
+        val index = options.strings.indexOf(name)
+        if (index != -1) nextName()
+        return index
+    }
+
+    override fun skipName() {
+        nextName()
+        pathNames[stackSize - 1] = "null"
+    }
+
+    override fun nextString(): String {
+        val value = when (peek()) {
+            Token.STRING -> peekedString ?: readString(peekedTag)
+            Token.NUMBER -> readNumber().toString()
+            else -> throw unexpected("a string")
+        }
+        consumed()
+        return value
+    }
+
+    override fun selectString(options: Options): Int {
+        if (peek() != Token.STRING) return -1
+        val value = peekedString ?: readString(peekedTag).also { peekedString = it }
+        val index = options.strings.indexOf(value)
+        if (index != -1) consumed()
+        return index
+    }
+
+    override fun nextBoolean(): Boolean {
+        require(Token.BOOLEAN)
+        val value = peekedTag == CommentTreeSnapshot.TAG_TRUE
+        consumed()
+        return value
+    }
+
+    override fun <T> nextNull(): T? {
+        require(Token.NULL)
+        consumed()
+        return null
+    }
+
+    override fun nextDouble(): Double {
+        val value = nextNumber()
+        val double = when (value) {
+            is Number -> value.toDouble()
+            else -> (value as String).toDoubleOrNull() ?:
+                throw JsonDataException("Expected a double but was $value at path $path")
+        }
+        if (!lenient && (double.isNaN() || double.isInfinite()))
+            throw JsonEncodingException("JSON forbids NaN and infinities: $double at path $path")
+        return double
+    }
+
+    override fun nextLong(): Long {
+        val value = nextNumber()
+        return try {
+            when (value) {
+                is Long -> value
+                is Double -> BigDecimal(value).longValueExact()
+                else -> BigDecimal(value as String).longValueExact()
+            }
+        } catch (e: ArithmeticException) {
+            throw JsonDataException("Expected a long but was $value at path $path")
+        } catch (e: NumberFormatException) {
+            throw JsonDataException("Expected a long but was $value at path $path")
+        }
+    }
+
+    override fun nextInt(): Int {
+        val value = nextLong()
+        if (value < Int.MIN_VALUE || value > Int.MAX_VALUE)
+            throw JsonDataException("Expected an int but was $value at path $path")
+        return value.toInt()
+    }
+
+    override fun skipValue() {
+        when (peek()) {
+            Token.NAME -> skipName()
+            Token.END_ARRAY, Token.END_OBJECT, Token.END_DOCUMENT -> throw unexpected("a value")
+            else -> {
+                // Strings still have to be read in case they're added to the string table
+                if (peekedString == null) skip(peekedTag)
+                consumed()
+            }
+        }
+    }
+
+    override fun promoteNameToValue() {
+        if (peek() == Token.NAME) {
+            peekedString = nextName()
+            peekedTag = CommentTreeSnapshot.TAG_STRING
+        }
+    }
+
+    override fun close() {
+        scopes[0] = JsonScope.CLOSED
+        stackSize = 1
+    }
+
+    /** Reads a ZigZag-encoded variable-length integer */
+    fun readVarint(): Long {
+        var result = 0L
+        var shift = 0
+        while (true) {
+            val b = source.readByte().toLong()
+            result = result or ((b and 0x7F) shl shift)
+            if (b and 0x80 == 0L) break
+            shift += 7
+        }
+        return (result ushr 1) xor -(result and 1)
+    }
+
+    private fun valueToken(): Token {
+        if (peekedTag == -1) peekedTag = source.readByte().toInt()
+        return when (peekedTag) {
+            CommentTreeSnapshot.TAG_NULL -> Token.NULL
+            CommentTreeSnapshot.TAG_FALSE, CommentTreeSnapshot.TAG_TRUE -> Token.BOOLEAN
+            CommentTreeSnapshot.TAG_LONG, CommentTreeSnapshot.TAG_DOUBLE -> Token.NUMBER
+            CommentTreeSnapshot.TAG_STRING, CommentTreeSnapshot.TAG_NEW_SHARED_STRING,
+            CommentTreeSnapshot.TAG_SHARED_STRING -> Token.STRING
+            CommentTreeSnapshot.TAG_ARRAY -> Token.BEGIN_ARRAY
+            CommentTreeSnapshot.TAG_OBJECT -> Token.BEGIN_OBJECT
+            else -> throw IllegalArgumentException("Unexpected tag in snapshot: $peekedTag")
+        }
+    }
+
+    /** Reads a number, or a string that might contain one, and returns it as a Long, Double or String */
+    private fun nextNumber(): Any {
+        val value: Any = when (peek()) {
+            Token.NUMBER -> readNumber()
+            Token.STRING -> peekedString ?: readString(peekedTag)
+            else -> throw unexpected("a number")
+        }
+        consumed()
+        return value
+    }
+
+    private fun readNumber(): Any = if (peekedTag == CommentTreeSnapshot.TAG_LONG)
+        readVarint()
+    else
+        java.lang.Double.longBitsToDouble(source.readLong())
+
+    /** Reads a string that was written with the given tag */
+    private fun readString(tag: Int): String = when (tag) {
+        CommentTreeSnapshot.TAG_STRING -> source.readUtf8(readVarint())
+        CommentTreeSnapshot.TAG_NEW_SHARED_STRING -> source.readUtf8(readVarint()).also { strings.add(it) }
+        CommentTreeSnapshot.TAG_SHARED_STRING -> strings[readVarint().toInt()]
+        else -> throw IllegalArgumentException("Expected a string in snapshot, got tag $tag")
+    }
+
+    /** Skips a value that was written with the given tag */
+    private fun skip(tag: Int) {
+        when (tag) {
+            CommentTreeSnapshot.TAG_LONG -> readVarint()
+            CommentTreeSnapshot.TAG_DOUBLE -> source.skip(8)
+            CommentTreeSnapshot.TAG_STRING, CommentTreeSnapshot.TAG_NEW_SHARED_STRING,
+            CommentTreeSnapshot.TAG_SHARED_STRING -> readString(tag)
+            CommentTreeSnapshot.TAG_ARRAY -> repeat(readVarint().toInt()) { skip(source.readByte().toInt()) }
+            CommentTreeSnapshot.TAG_OBJECT -> repeat(readVarint().toInt()) {
+                readString(source.readByte().toInt())
+                skip(source.readByte().toInt())
+            }
+        }
+    }
+
+    private fun require(expected: Token) {
+        if (peek() != expected) throw unexpected(expected.toString())
+    }
+
+    private fun unexpected(expected: String) = JsonDataException("Expected $expected but was ${peek()} at path $path")
+
+    private fun push(scope: Int, size: Int) {
+        peekedTag = -1
+        if (stackSize == remaining.size) remaining = remaining.copyOf(remaining.size * 2)
+        pushScope(scope)
+        remaining[stackSize - 1] = size
+        pathIndices[stackSize - 1] = 0
+    }
+
+    private fun pop() {
+        stackSize--
+        pathNames[stackSize] = null
+        consumed()
+    }
+
+    /** Called once a value has been read completely */
+    private fun consumed() {
+        peekedTag = -1
+        peekedString = null
+        val i = stackSize - 1
+        when (scopes[i]) {
+            JsonScope.EMPTY_ARRAY, JsonScope.NONEMPTY_ARRAY -> {
+                scopes[i] = JsonScope.NONEMPTY_ARRAY
+                remaining[i]--
+                pathIndices[i]++
+            }
+            JsonScope.DANGLING_NAME -> {
+                scopes[i] = JsonScope.NONEMPTY_OBJECT
+                remaining[i]--
+            }
+        }
+    }
+}
@@ -15,8 +15,19 @@ import java.util.*
  */
 object JrawUtils {
     /** A Moshi instance configured with all the proper JsonAdapter(Factory) instances to handle all JRAW types. */
-    @JvmField val moshi: Moshi = Moshi.Builder()
+    @JvmField val moshi: Moshi = addAdapters(Moshi.Builder()).build()
+
+    /**
+     * Adds all the JsonAdapter(Factory) instances used by [moshi] to the given builder. Adapters that were added to the
+     * builder before this will take precedence over JRAW's own.
+     *
+     * ```kotlin
+     * val moshi = JrawUtils.addAdapters(Moshi.Builder().add(LazyModelAdapterFactory())).build()
+     * ```
+     */
+    @JvmStatic fun addAdapters(builder: Moshi.Builder): Moshi.Builder = builder
         .add(UnixDateAdapterFactory())
+        .add(InternedStringAdapterFactory())
         .add(EmojiListAdapterFactory())
         .add(SubmissionDataAdapterFactory())
         .add(SimpleFlairInfoListingAdapterFactory())
@@ -41,7 +52,6 @@ object JrawUtils {
         .add(VoteDirection::class.java, VoteDirectionAdapter())
         .add(RedditExceptionStubAdapterFactory())
         .add(LiveWebSocketUpdateAdapterFactory())
-        .build()
 
     /** Creates a JsonAdapter for an implied type. Convenience function using reified generics. */
     @JvmStatic inline fun <reified T> adapter(): JsonAdapter<T> = moshi.adapter(T::class.java)
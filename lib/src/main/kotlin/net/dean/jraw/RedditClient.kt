@@ -2,6 +2,7 @@ package net.dean.jraw
 
 import com.squareup.moshi.Types
 import net.dean.jraw.databind.Enveloped
+import net.dean.jraw.databind.ProjectionAdapter
 import net.dean.jraw.http.*
 import net.dean.jraw.models.*
 import net.dean.jraw.models.internal.RedditExceptionStub
@@ -12,13 +13,13 @@ import net.dean.jraw.pagination.BarebonesPaginator
 import net.dean.jraw.pagination.DefaultPaginator
 import net.dean.jraw.pagination.SearchPaginator
 import net.dean.jraw.pagination.SubredditSearchPaginator
-import net.dean.jraw.ratelimit.LeakyBucketRateLimiter
-import net.dean.jraw.ratelimit.RateLimiter
+import net.dean.jraw.ratelimit.*
 import net.dean.jraw.references.*
 import okhttp3.HttpUrl
 import okhttp3.WebSocket
 import okhttp3.WebSocketListener
-import java.util.concurrent.TimeUnit
+import java.io.IOException
+import java.util.concurrent.*
 
 /**
  * Specialized class for sending requests to [oauth.reddit.com](https://www.reddit.com/dev/api/oauth).
@@ -37,8 +38,10 @@ import java.util.concurrent.TimeUnit
  * OAuth2 app credentials operating independently of each other. For that reason, it is recommended to have only one
  * instance of the RedditClient per application.
  *
- * By default, any request that responds with a server error code (5XX) will be retried up to five times. You can change
- * this by changing [retryLimit].
+ * By default, any request that responds with a server error code (5XX) or a 429 will be retried up to five times, waiting
+ * a little longer before each attempt. Requests that fail because of a connection problem are retried the same way, but
+ * only if their method is idempotent (GET, HEAD, PUT or DELETE). You can change this by changing [retryLimit] and
+ * [retryPolicy].
  */
 class RedditClient internal constructor(
     /** How this client will send HTTP requests */
@@ -57,19 +60,47 @@ class RedditClient internal constructor(
     var logHttp = true
 
     /**
-     * How many times this client will retry requests that result in 5XX erorr codes. Defaults to 5. Set to a number
-     * less than 1 to disable this functionality.
+     * The most times this client will retry a failed request. Which failures are retried (error responses like 5XX
+     * and 429 codes, connection problems) is decided by the [retryPolicy]. Defaults to 5. Set to a number less than 1
+     * to disable retrying entirely.
      */
     var retryLimit: Int = DEFAULT_RETRY_LIMIT
 
+    /**
+     * Decides which failed requests are retried and how long to wait before each attempt. Defaults to an
+     * [ExponentialBackoffRetryPolicy]. Requests are never retried more than [retryLimit] times.
+     */
+    var retryPolicy: RetryPolicy = ExponentialBackoffRetryPolicy()
+
+    /** If non-null, gets notified every time a request is about to be retried */
+    var retryListener: RetryListener? = null
+
     /**
      * How this client will determine when it can send a request.
      *
      * By default, this RateLimiter is a [LeakyBucketRateLimiter] with a capacity of 5 permits and refills them at a
-     * rate of 1 token per second.
+     * rate of 1 token per second. If this is a [ResponseAwareRateLimiter] (like [AdaptiveRateLimiter]), it is updated
+     * with the rate limit reddit reports in every response.
      */
     var rateLimiter: RateLimiter = LeakyBucketRateLimiter(BURST_LIMIT, RATE_LIMIT, TimeUnit.SECONDS)
 
+    /**
+     * Runs the blocking parts of [requestAsync] (waiting for the rate limiter and renewing the access token). Defaults
+     * to a single daemon thread, which is plenty since requests themselves are sent without blocking.
+     */
+    var asyncExecutor: ScheduledExecutorService
+        get() {
+            // Double-checked so that concurrent first calls don't each create (and leak) an executor
+            _asyncExecutor?.let { return it }
+            synchronized(this) {
+                return _asyncExecutor ?: Executors.newSingleThreadScheduledExecutor(ASYNC_THREAD_FACTORY).also {
+                    _asyncExecutor = it
+                }
+            }
+        }
+        set(value) = synchronized(this) { _asyncExecutor = value }
+    @Volatile private var _asyncExecutor: ScheduledExecutorService? = null
+
     /** If true, any time a request is made, the access token will be renewed if necessary. */
     var autoRenew = true
 
@@ -87,6 +118,12 @@ class RedditClient internal constructor(
      */
     internal var loggedOut: Boolean = false
 
+    /**
+     * reddit only allows one request to the morechildren endpoint at a time for each client. Comment trees synchronize
+     * on this object before sending one.
+     */
+    internal val moreChildrenLock = Any()
+
     init {
         // Use overrideUsername if available, otherwise try to fetch the name from the API. We can't use
         // me().about().name since that would require a valid access token (we have to call authManager.update after
@@ -121,7 +158,78 @@ class RedditClient internal constructor(
     }
 
     @Throws(NetworkException::class)
-    private fun request(r: HttpRequest, retryCount: Int = 0): HttpResponse {
+    private fun sendWithRetries(r: HttpRequest): HttpResponse {
+        var attempt = 0
+        var delay = 0L
+
+        while (true) {
+            val req = prepareRequest(r)
+
+            // Only ratelimit on the first try
+            if (attempt == 0)
+                rateLimiter.acquire()
+            attempt++
+
+            var res: HttpResponse? = null
+            var error: IOException? = null
+            try {
+                val tag = if (logHttp) logger.request(req) else null
+                res = http.execute(req)
+                if (tag != null) logger.response(tag, res)
+                updateRateLimiter(res)
+            } catch (e: IOException) {
+                error = e
+            }
+
+            delay = retryDelay(req, attempt, delay, res, error)
+            if (delay >= 0) {
+                // Read the (usually tiny) error body so the connection is released while we wait, but the response
+                // can still be reported if we're interrupted
+                res?.body
+
+                try {
+                    Thread.sleep(delay)
+                    continue
+                } catch (e: InterruptedException) {
+                    // Stop retrying and report the last failure instead
+                    Thread.currentThread().interrupt()
+                }
+            }
+
+            if (error != null) throw error
+            return checkResponse(res!!)
+        }
+    }
+
+    /** Lets the [rateLimiter] know about the rate limit reddit reported, if it cares */
+    private fun updateRateLimiter(res: HttpResponse) {
+        val limiter = rateLimiter as? ResponseAwareRateLimiter ?: return
+        val status = RateLimitStatus.parse(
+            remaining = res.raw.header(RateLimitStatus.HEADER_REMAINING),
+            used = res.raw.header(RateLimitStatus.HEADER_USED),
+            reset = res.raw.header(RateLimitStatus.HEADER_RESET)
+        ) ?: return
+        limiter.update(status)
+    }
+
+    /**
+     * Asks the [retryPolicy] how long to wait before sending [req] again, notifying the [retryListener] if it's going to
+     * be retried. Returns a negative number if it shouldn't be.
+     */
+    private fun retryDelay(req: HttpRequest, attempt: Int, previousDelay: Long, res: HttpResponse?, error: IOException?): Long {
+        // The first attempt isn't a retry
+        if (attempt > retryLimit) return -1
+
+        val delay = retryPolicy.retryDelay(req, attempt, previousDelay, res, error)
+        if (delay >= 0) retryListener?.onRetry(req, attempt, delay, res, error)
+        return delay
+    }
+
+    /**
+     * Renews the access token if necessary and adds the raw_json parameter if requested. Returns the request that
+     * should actually be sent.
+     */
+    private fun prepareRequest(r: HttpRequest): HttpRequest {
         if (loggedOut)
             throw IllegalStateException("This client is logged out and should not be used anymore")
 
@@ -156,31 +264,24 @@ class RedditClient internal constructor(
             req = req.newBuilder().url(newUrl.build()).build()
         }
 
-        // Only ratelimit on the first try
-        if (retryCount == 0)
-            rateLimiter.acquire()
-
-        val res = if (logHttp) {
-            // Log the request and response, returning 'res'
-            val tag = logger.request(req)
-            val res = http.execute(req)
-            logger.response(tag, res)
-            res
-        } else {
-            http.execute(req)
-        }
-
-        if (res.code in 500..599 && retryCount < retryLimit) {
-            return request(req, retryCount + 1)
-        }
+        return req
+    }
 
+    /**
+     * Throws an exception if the response contains an API error or if it has an unsuccessful status code. Returns the
+     * given response otherwise.
+     */
+    private fun checkResponse(res: HttpResponse): HttpResponse {
         val type = res.raw.body()?.contentType()
 
         // Try to find any API errors embedded in the JSON document
         if (type != null && type.type() == "application" && type.subtype() == "json") {
-            // Make the adapter lenient so we're not required to read the entire body
+            // Make the adapter lenient so we're not required to read the entire body. Peek at the body instead of
+            // using res.body so that it can still be deserialized straight from the source later on. The adapter
+            // usually stops after the first few properties, so only the start of the body is actually loaded.
             val adapter = JrawUtils.adapter<RedditExceptionStub<*>>().lenient()
-            val stub = if (res.body == "") null else adapter.fromJson(res.body)
+            val content = res.peekSource()
+            val stub = if (content.exhausted()) null else adapter.fromJson(content)
 
             // Reddit has some legacy endpoints that return 200 OK even though the JSON contains errors
             if (stub != null) {
@@ -196,6 +297,55 @@ class RedditClient internal constructor(
         return res
     }
 
+    /**
+     * Sends the request through [NetworkAdapter.executeAsync] and completes [result] once a final response has been
+     * checked. Failed attempts are retried the same way [request] retries them, except the delay is scheduled on
+     * [asyncExecutor] instead of blocking a thread. Must be called from [asyncExecutor].
+     */
+    private fun requestAsync(r: HttpRequest, attempt: Int, previousDelay: Long, result: CompletableFuture<HttpResponse>) {
+        // Nothing to do if the caller cancelled the request while we were waiting
+        if (result.isDone) return
+
+        val req = prepareRequest(r)
+        val tag = if (logHttp) logger.request(req) else null
+        val call = http.executeAsync(req)
+
+        // Propagate cancellation to the request currently in flight
+        result.whenComplete { _, _ -> if (result.isCancelled) call.cancel(true) }
+
+        call.whenComplete { res, thrown ->
+            try {
+                val error = if (thrown is CompletionException && thrown.cause != null) thrown.cause else thrown
+                if (error != null && error !is IOException) throw error
+
+                if (res != null) {
+                    if (tag != null) logger.response(tag, res)
+                    updateRateLimiter(res)
+                }
+
+                val delay = retryDelay(req, attempt + 1, previousDelay, res, error as IOException?)
+                if (delay < 0) {
+                    if (error != null) throw error
+                    result.complete(checkResponse(res))
+                } else {
+                    // Release the connection while we wait
+                    res?.raw?.close()
+
+                    // Renewing the access token blocks, so don't do that on the network thread either
+                    asyncExecutor.schedule({
+                        try {
+                            requestAsync(r, attempt + 1, delay, result)
+                        } catch (e: Throwable) {
+                            result.completeExceptionally(e)
+                        }
+                    }, delay, TimeUnit.MILLISECONDS)
+                }
+            } catch (e: Throwable) {
+                result.completeExceptionally(e)
+            }
+        }
+    }
+
     /**
      * Attempts to open a WebSocket connection at the given URL.
      */
@@ -217,7 +367,7 @@ class RedditClient internal constructor(
      * detected in the response.
      */
     @Throws(NetworkException::class, RedditException::class)
-    fun request(r: HttpRequest): HttpResponse = request(r, retryCount = 0)
+    fun request(r: HttpRequest): HttpResponse = sendWithRetries(r)
 
     /**
      * Adds a little syntactic sugar to the vanilla `request` method.
@@ -255,6 +405,39 @@ class RedditClient internal constructor(
     @Throws(NetworkException::class, RedditException::class)
     fun request(configure: (stub: HttpRequest.Builder) -> HttpRequest.Builder) = request(configure(requestStub()).build())
 
+    /**
+     * Asynchronous version of [request]. The returned future completes with the response once it has been received,
+     * or exceptionally with the same exceptions [request] would have thrown. The access token is renewed, the request is
+     * rate limited, retried according to [retryPolicy], and logged the same way [request] does it.
+     *
+     * Waiting for the rate limiter and renewing the access token happen on [asyncExecutor], and the request itself is
+     * sent through [NetworkAdapter.executeAsync], so the calling thread is never blocked. Cancelling the returned
+     * future will cancel the request if it hasn't completed already.
+     *
+     * ```
+     * reddit.requestAsync(reddit.requestStub()
+     *     .path("/api/v1/me")
+     *     .build())
+     *     .thenAccept { println(it.body) }
+     * ```
+     */
+    fun requestAsync(r: HttpRequest): CompletableFuture<HttpResponse> {
+        val result = CompletableFuture<HttpResponse>()
+        asyncExecutor.execute {
+            try {
+                rateLimiter.acquire()
+                requestAsync(r, attempt = 0, previousDelay = 0, result = result)
+            } catch (e: Throwable) {
+                result.completeExceptionally(e)
+            }
+        }
+        return result
+    }
+
+    /** Asynchronous version of `request(configure)`. See [requestAsync] for more. */
+    fun requestAsync(configure: (stub: HttpRequest.Builder) -> HttpRequest.Builder) =
+        requestAsync(configure(requestStub()).build())
+
     /**
      * Creates a UserReference for the currently logged in user.
      *
@@ -469,6 +652,20 @@ class RedditClient internal constructor(
         }.deserializeWith(adapter)
     }
 
+    /**
+     * Like [lookup], but only reads the properties in the [projection] of each model. The full models are never
+     * created.
+     */
+    @EndpointImplementation(Endpoint.GET_INFO)
+    fun lookup(fullNames: List<String>, projection: Projection): Listing<ProjectedModel> {
+        if (fullNames.isEmpty()) return Listing.empty()
+
+        return request {
+            it.endpoint(Endpoint.GET_INFO, null)
+                .query(mapOf("id" to fullNames.joinToString(",")))
+        }.deserializeWith(ProjectionAdapter.listing(projection))
+    }
+
     /**
      * Creates a reference to a live thread with the given ID.
      *
@@ -527,5 +724,12 @@ class RedditClient internal constructor(
         const val RATE_LIMIT = 1L
         private const val BURST_LIMIT = 5L
         private const val DEFAULT_RETRY_LIMIT = 5
+
+        private val ASYNC_THREAD_FACTORY = ThreadFactory { r ->
+            val t = Thread(r, "jraw-async")
+            // Don't prevent the JVM from exiting
+            t.isDaemon = true
+            t
+        }
     }
 }
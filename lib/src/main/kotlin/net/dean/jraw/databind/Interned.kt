@@ -0,0 +1,12 @@
+package net.dean.jraw.databind
+
+import com.squareup.moshi.JsonQualifier
+
+/**
+ * Marks a String property whose values repeat a lot between models, like a subreddit name or an author. When
+ * [InternedStringAdapterFactory.pool] is set, the values of these properties are replaced by the copy in the pool while
+ * they're being read.
+ */
+@Retention(AnnotationRetention.RUNTIME)
+@JsonQualifier
+annotation class Interned
@@ -0,0 +1,43 @@
+package net.dean.jraw.databind
+
+import com.squareup.moshi.*
+import java.lang.reflect.Type
+
+/**
+ * This factory produces JsonAdapters that handle String properties annotated with [Interned]. By default they read
+ * Strings like Moshi always does. Once a [pool] has been set, every value is replaced by the equal String in the pool,
+ * so models read afterwards share one instance of each subreddit name, author, domain, etc.
+ *
+ * ```kotlin
+ * val pool = StringPool()
+ * InternedStringAdapterFactory.pool = pool
+ * // Read a lot of submissions
+ * println(pool.hitRate)
+ * ```
+ */
+class InternedStringAdapterFactory : JsonAdapter.Factory {
+    /** @inheritDoc */
+    override fun create(type: Type, annotations: MutableSet<out Annotation>, moshi: Moshi): JsonAdapter<*>? {
+        if (type != String::class.java) return null
+        Types.nextAnnotations(annotations, Interned::class.java) ?: return null
+        return Adapter
+    }
+
+    private object Adapter : JsonAdapter<String>() {
+        override fun fromJson(reader: JsonReader): String? {
+            if (reader.peek() == JsonReader.Token.NULL) return reader.nextNull()
+            val value = reader.nextString()
+            return pool?.intern(value) ?: value
+        }
+
+        override fun toJson(writer: JsonWriter, value: String?) {
+            writer.value(value)
+        }
+    }
+
+    /** */
+    companion object {
+        /** The pool that [Interned] properties are read into, or null to not pool them at all (the default) */
+        @JvmStatic @Volatile var pool: StringPool? = null
+    }
+}
@@ -0,0 +1,157 @@
+package net.dean.jraw.databind
+
+import com.squareup.moshi.*
+import net.dean.jraw.models.EmbeddedMedia
+import net.dean.jraw.models.SubmissionPreview
+import net.dean.jraw.JrawUtils
+import okio.Buffer
+import java.lang.reflect.Type
+import java.math.BigDecimal
+
+/**
+ * Delays decoding the heavy parts of a submission until they're used for the first time. A [SubmissionPreview] or
+ * [EmbeddedMedia] read by a Moshi instance this factory was added to is kept as its raw (UTF-8 encoded) JSON instead of
+ * as a tree of objects, and only turned into one when one of its getters is called. The result is remembered, and the
+ * raw JSON is dropped.
+ *
+ * Most apps never look at either of them for most submissions, so submissions that are kept around (in a cache, for
+ * example) take up noticeably less memory. Reading them is slower though, since the JSON has to be copied token by
+ * token, which is why [JrawUtils.moshi] doesn't use this factory. Numbers are copied as they were written, so no
+ * precision is lost. The lazy objects are equal to the ones that would have been created otherwise, and they're
+ * serialized as those as well.
+ *
+ * Since decoding happens later, a preview or media object that reddit sent in a shape JRAW doesn't understand makes
+ * its getters throw a [JsonDataException] instead of the request that returned it.
+ *
+ * The factory has to be added before JRAW's own adapters:
+ *
+ * ```kotlin
+ * val moshi = JrawUtils.addAdapters(Moshi.Builder().add(LazyModelAdapterFactory())).build()
+ * val submissions = response.deserializeWith(moshi.adapter<Listing<Submission>>(type, Enveloped::class.java))
+ * ```
+ */
+class LazyModelAdapterFactory : JsonAdapter.Factory {
+    /** @inheritDoc */
+    override fun create(type: Type, annotations: MutableSet<out Annotation>, moshi: Moshi): JsonAdapter<*>? {
+        if (annotations.isNotEmpty()) return null
+
+        return when (type) {
+            SubmissionPreview::class.java ->
+                LazyAdapter(moshi.nextAdapter<SubmissionPreview>(this, type, annotations)) { LazySubmissionPreview(it) }
+            EmbeddedMedia::class.java ->
+                LazyAdapter(moshi.nextAdapter<EmbeddedMedia>(this, type, annotations)) { LazyEmbeddedMedia(it) }
+            else -> null
+        }
+    }
+
+    private class LazyAdapter<T>(
+        private val delegate: JsonAdapter<T>,
+        private val wrap: (LazyValue<T>) -> T
+    ) : JsonAdapter<T>() {
+        override fun fromJson(reader: JsonReader): T? {
+            if (reader.peek() == JsonReader.Token.NULL) return reader.nextNull()
+
+            val buffer = Buffer()
+            val writer = JsonWriter.of(buffer)
+            writer.serializeNulls = true
+            copyValue(reader, writer)
+            writer.close()
+
+            return wrap(LazyValue(buffer.readByteArray(), delegate))
+        }
+
+        override fun toJson(writer: JsonWriter, value: T?) = delegate.toJson(writer, value)
+    }
+
+    /** */
+    companion object {
+        /** Property names reddit uses in previews and embedded media, so that they can be copied without new Strings */
+        private val KNOWN_NAMES = arrayOf(
+            // SubmissionPreview
+            "images", "enabled", "source", "resolutions", "variants", "id", "url", "width", "height", "gif", "mp4",
+            "obfuscated", "nsfw",
+            // EmbeddedMedia
+            "type", "oembed", "event_id", "reddit_video", "version", "title", "author_name", "author_url",
+            "provider_name", "provider_url", "cache_age", "thumbnail_url", "thumbnail_width", "thumbnail_height", "html",
+            "fallback_url", "scrubber_media_url", "dash_url", "duration", "hls_url", "is_gif", "transcoding_status"
+        )
+        private val knownNames = JsonReader.Options.of(*KNOWN_NAMES)
+
+        /** Writes the next value of the [reader] to the [writer] as it is */
+        internal fun copyValue(reader: JsonReader, writer: JsonWriter) {
+            when (reader.peek()) {
+                JsonReader.Token.BEGIN_OBJECT -> {
+                    reader.beginObject()
+                    writer.beginObject()
+                    while (reader.hasNext()) {
+                        val index = reader.selectName(knownNames)
+                        writer.name(if (index == -1) reader.nextName() else KNOWN_NAMES[index])
+                        copyValue(reader, writer)
+                    }
+                    reader.endObject()
+                    writer.endObject()
+                }
+                JsonReader.Token.BEGIN_ARRAY -> {
+                    reader.beginArray()
+                    writer.beginArray()
+                    while (reader.hasNext())
+                        copyValue(reader, writer)
+                    reader.endArray()
+                    writer.endArray()
+                }
+                // Moshi gives numbers back as they were written when they're read as strings. Unlike a double, a
+                // BigDecimal keeps every one of their digits.
+                JsonReader.Token.NUMBER -> writer.value(BigDecimal(reader.nextString()))
+                JsonReader.Token.STRING -> writer.value(reader.nextString())
+                JsonReader.Token.BOOLEAN -> writer.value(reader.nextBoolean())
+                JsonReader.Token.NULL -> {
+                    reader.nextNull<Any>()
+                    writer.nullValue()
+                }
+                else -> throw JsonDataException("Unexpected ${reader.peek()} at ${reader.path}")
+            }
+        }
+    }
+}
+
+/** Raw JSON that is decoded by [adapter] the first time [get] is called */
+internal class LazyValue<T>(json: ByteArray, private val adapter: JsonAdapter<T>) {
+    private var json: ByteArray? = json
+    @Volatile private var value: T? = null
+
+    fun get(): T = value ?: synchronized(this) {
+        value ?: decode().also {
+            value = it
+            json = null
+        }
+    }
+
+    private fun decode(): T = adapter.fromJson(Buffer().write(json!!)) ?:
+        throw JsonDataException("Expected a value, got null")
+}
+
+private class LazySubmissionPreview(private val lazy: LazyValue<SubmissionPreview>) : SubmissionPreview() {
+    override fun getImages(): List<ImageSet> = lazy.get().images
+    override fun isEnabled(): Boolean = lazy.get().isEnabled
+
+    override fun equals(other: Any?) = lazy.get() == other
+    override fun hashCode() = lazy.get().hashCode()
+    override fun toString() = lazy.get().toString()
+
+    /** Serialize the decoded object instead */
+    private fun writeReplace(): Any = lazy.get()
+}
+
+private class LazyEmbeddedMedia(private val lazy: LazyValue<EmbeddedMedia>) : EmbeddedMedia() {
+    override fun getType(): String? = lazy.get().type
+    override fun getOEmbed(): OEmbed? = lazy.get().oEmbed
+    override fun getLiveThreadId(): String? = lazy.get().liveThreadId
+    override fun getRedditVideo(): RedditVideo? = lazy.get().redditVideo
+
+    override fun equals(other: Any?) = lazy.get() == other
+    override fun hashCode() = lazy.get().hashCode()
+    override fun toString() = lazy.get().toString()
+
+    /** Serialize the decoded object instead */
+    private fun writeReplace(): Any = lazy.get()
+}
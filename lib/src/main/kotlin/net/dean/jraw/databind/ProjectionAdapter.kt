@@ -0,0 +1,109 @@
+package net.dean.jraw.databind
+
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.JsonDataException
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.JsonWriter
+import net.dean.jraw.models.Listing
+import net.dean.jraw.models.ProjectedModel
+import net.dean.jraw.models.Projection
+
+/**
+ * Reads an enveloped model into a [ProjectedModel]. Only the properties in the [projection] are read, the rest are
+ * skipped without being turned into objects.
+ *
+ * Moshi turns every property name that isn't in the [JsonReader.Options] passed to [JsonReader.selectName] into a
+ * String, which would be most of them. To avoid that, this adapter remembers the names of the properties it skipped
+ * and adds them to its Options, so that after the first few items every name can be matched without creating a String.
+ */
+internal class ProjectionAdapter(private val projection: Projection) : JsonAdapter<ProjectedModel>() {
+    private val fieldCount = projection.fields.size
+
+    /** The projected properties, followed by the properties that have been skipped before */
+    @Volatile private var known = KnownNames(projection.fields.toTypedArray())
+
+    override fun fromJson(reader: JsonReader): ProjectedModel {
+        val path = reader.path
+        var kind: String? = null
+        var values: Map<String, Any?>? = null
+
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.selectName(envelopeOptions)) {
+                // "kind"
+                0 -> kind = reader.nextString()
+                // "data"
+                1 -> values = readData(reader)
+                -1 -> {
+                    reader.nextName()
+                    reader.skipValue()
+                }
+            }
+        }
+        reader.endObject()
+
+        return ProjectedModel(
+            kind = kind ?: throw JsonDataException("Expected a value at $path.kind"),
+            projection = projection,
+            values = values ?: throw JsonDataException("Expected a value at $path.data")
+        )
+    }
+
+    private fun readData(reader: JsonReader): Map<String, Any?> {
+        val known = this.known
+        val values = HashMap<String, Any?>(fieldCount * 2)
+        var unknown: MutableList<String>? = null
+
+        reader.beginObject()
+        while (reader.hasNext()) {
+            val index = reader.selectName(known.options)
+            when {
+                index == -1 -> {
+                    // selectName() has already created a String for this name, so this doesn't cost anything extra
+                    val name = reader.nextName()
+                    reader.skipValue()
+                    if (unknown == null) unknown = ArrayList()
+                    unknown.add(name)
+                }
+                index < fieldCount -> values[known.names[index]] = reader.readJsonValue()
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+
+        if (unknown != null) learn(unknown)
+        return values
+    }
+
+    /** Adds the given names to [known] so that they don't have to be turned into Strings next time */
+    private fun learn(names: List<String>) = synchronized(this) {
+        val current = known
+        if (current.names.size >= MAX_KNOWN_NAMES) return
+
+        val added = names.filter { it !in current.names }.distinct().take(MAX_KNOWN_NAMES - current.names.size)
+        if (added.isNotEmpty())
+            known = KnownNames(current.names + added)
+    }
+
+    override fun toJson(writer: JsonWriter, value: ProjectedModel?) {
+        throw UnsupportedOperationException("Serializing projected models isn't supported")
+    }
+
+    private class KnownNames(val names: Array<String>) {
+        val options: JsonReader.Options = JsonReader.Options.of(*names)
+    }
+
+    /** */
+    companion object {
+        /** How many property names to remember, in case a model has an endless amount of different ones */
+        private const val MAX_KNOWN_NAMES = 512
+
+        private val envelopeOptions = JsonReader.Options.of("kind", "data")
+
+        /** Creates an adapter for an enveloped Listing of models read with the given projection */
+        @Suppress("UNCHECKED_CAST")
+        fun listing(projection: Projection): JsonAdapter<Listing<ProjectedModel>> =
+            RedditModelAdapterFactory.ListingAdapter(ProjectionAdapter(projection) as JsonAdapter<Any>)
+                as JsonAdapter<Listing<ProjectedModel>>
+    }
+}
@@ -15,37 +15,99 @@ internal class RedditExceptionStubAdapterFactory : JsonAdapter.Factory {
         val rawType = Types.getRawType(type)
         if (!RedditExceptionStub::class.java.isAssignableFrom(rawType)) return null
 
-        val adapters = types.map { moshi.adapter<RedditExceptionStub<*>>(it) }
-        return StubAdapter(adapters)
-    }
-
-    companion object {
-        private val types: List<Class<out RedditExceptionStub<*>>> = listOf(
-            ObjectBasedApiExceptionStub::class.java,
-            GenericJsonResponse::class.java
+        return StubAdapter(
+            moshi.adapter(ObjectBasedApiExceptionStub::class.java),
+            moshi.adapter(GenericJsonResponse::class.java)
         )
     }
 
-    private class StubAdapter(private val delegates: List<JsonAdapter<out RedditExceptionStub<*>>>) : JsonAdapter<RedditExceptionStub<*>>() {
+    /**
+     * Looks for API errors without reading the whole response into memory. Only the properties that the stubs care
+     * about are read, everything else is skipped. This adapter is run before every JSON response is deserialized, so
+     * it's important that it doesn't take as long as deserializing the response itself.
+     */
+    private class StubAdapter(
+        private val objectBased: JsonAdapter<ObjectBasedApiExceptionStub>,
+        private val generic: JsonAdapter<GenericJsonResponse>
+    ) : JsonAdapter<RedditExceptionStub<*>>() {
         override fun fromJson(reader: JsonReader): RedditExceptionStub<*>? {
-            if (reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
-                val jsonValue = reader.readJsonValue()
-
-                // The suggested implementation is simpler to read but much slower
-                @Suppress("LoopToCallChain")
-                for (adapter in delegates) {
-                    val stub = adapter.fromJsonValue(jsonValue)!!
-                    if (stub.containsError())
-                        return stub
+            // Errors are always objects. Everything else (like the array the comments endpoint sends) can't be an error.
+            if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) return null
+
+            // The properties used by ObjectBasedApiExceptionStub
+            var properties: MutableMap<String, Any?>? = null
+            // The value of "json", used by GenericJsonResponse
+            var json: Map<String, Any?>? = null
+
+            reader.beginObject()
+            while (reader.hasNext()) {
+                val index = reader.selectName(topLevelOptions)
+                when (index) {
+                    -1 -> {
+                        reader.nextName()
+                        reader.skipValue()
+                    }
+                    // Models like Listings are always wrapped in an envelope, which never contains an error. We don't
+                    // have to read the rest of the object to know that.
+                    KIND_INDEX -> return null
+                    JSON_INDEX -> json = readGenericJson(reader)
+                    else -> {
+                        if (properties == null) properties = HashMap()
+                        properties[topLevelNames[index]] = reader.readJsonValue()
+                    }
                 }
+            }
+            reader.endObject()
+
+            if (properties != null) {
+                val stub = objectBased.fromJsonValue(properties)!!
+                if (stub.containsError()) return stub
+            }
 
+            if (json != null && json.isNotEmpty()) {
+                val stub = generic.fromJsonValue(mapOf("json" to json))!!
+                if (stub.containsError()) return stub
             }
 
             return null
         }
 
+        /** Reads "errors" and "ratelimit" from the value of "json", skipping "data" and anything else */
+        private fun readGenericJson(reader: JsonReader): Map<String, Any?>? {
+            if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                reader.skipValue()
+                return null
+            }
+
+            val json = HashMap<String, Any?>()
+            reader.beginObject()
+            while (reader.hasNext()) {
+                val index = reader.selectName(genericJsonOptions)
+                if (index == -1) {
+                    reader.nextName()
+                    reader.skipValue()
+                } else {
+                    json[genericJsonNames[index]] = reader.readJsonValue()
+                }
+            }
+            reader.endObject()
+            return json
+        }
+
         override fun toJson(writer: JsonWriter?, value: RedditExceptionStub<*>?) {
             TODO("not implemented")
         }
     }
+
+    private companion object {
+        /** Properties of ObjectBasedApiExceptionStub, followed by "json" and "kind" */
+        private val topLevelNames = arrayOf("fields", "explanation", "message", "reason", "error", "json", "kind")
+        private val topLevelOptions = JsonReader.Options.of(*topLevelNames)
+        private val JSON_INDEX = topLevelNames.indexOf("json")
+        private val KIND_INDEX = topLevelNames.indexOf("kind")
+
+        /** Properties of GenericJsonResponse.Inner that are needed to find errors */
+        private val genericJsonNames = arrayOf("errors", "ratelimit")
+        private val genericJsonOptions = JsonReader.Options.of(*genericJsonNames)
+    }
 }
@@ -7,6 +7,7 @@ import net.dean.jraw.models.Subreddit
 import net.dean.jraw.models.internal.RedditModelEnvelope
 import java.lang.reflect.ParameterizedType
 import java.lang.reflect.Type
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Creates JsonAdapters for a class annotated with [RedditModel].
@@ -38,12 +39,12 @@ import java.lang.reflect.Type
  *
  * Dynamic deserialization works like this:
  *
- *  1. Write the JSON value into a "simple" type (e.g. a Map)
- *  2. Lookup the value of the "kind" node
- *  3. Determine the correct concrete class by looking up the kind in the [registry]
- *  4. Transform the intermediate JSON (the Map) into an instance of that class
+ *  1. Read the value of the "kind" node
+ *  2. Determine the correct concrete class by looking up the kind in the [registry]
+ *  3. Read the "data" node directly into an instance of that class
  *
- * Keep in mind that dynamic deserialization is a bit hacky and is probably slower than static deserialization.
+ * reddit always sends "kind" before "data", so the data is only read once. If "data" does come first, it's read into
+ * a "simple" type (e.g. a Map) and transformed into an instance of the right class once the kind is known.
  */
 class RedditModelAdapterFactory(
     /**
@@ -144,6 +145,11 @@ class RedditModelAdapterFactory(
         private val moshi: Moshi,
         internal val upperBound: Class<*>
     ) : JsonAdapter<Any>() {
+        /**
+         * Adapters for the "data" of each kind, resolved the first time that kind is seen. Resolving them when this
+         * adapter is created could end up asking Moshi for this adapter again (e.g. a Comment's replies).
+         */
+        private val dataAdapters: MutableMap<String, JsonAdapter<*>> = ConcurrentHashMap()
 
         override fun toJson(writer: JsonWriter?, value: Any?) {
             throw UnsupportedOperationException("Serializing dynamic models aren't supported right now")
@@ -152,16 +158,63 @@ class RedditModelAdapterFactory(
         override fun fromJson(reader: JsonReader): Any {
             val path = reader.path
 
-            val json = expectType<Map<String, Any>>(reader.readJsonValue(), path)
-            val kind = expectType<String>(json["kind"], "$path.kind")
+            // Report anything that isn't an object the same way as any other unexpected type
+            if (reader.peek() != JsonReader.Token.BEGIN_OBJECT)
+                expectType<Map<String, Any>>(reader.readJsonValue(), path)
+
+            var kind: String? = null
+            var data: Any? = null
+            var hasData = false
+            // Only used when "data" comes before "kind", which reddit doesn't do in practice
+            var bufferedData: Any? = null
+
+            reader.beginObject()
+            while (reader.hasNext()) {
+                when (reader.selectName(envelopeOptions)) {
+                    0 -> {
+                        // "kind"
+                        kind = expectType<String>(reader.readJsonValue(), "$path.kind")
+                    }
+                    1 -> {
+                        // "data"
+                        hasData = true
+                        if (kind == null) {
+                            bufferedData = reader.readJsonValue()
+                        } else {
+                            if (reader.peek() == JsonReader.Token.NULL)
+                                throw JsonDataException("Expected a non-null value at $path.data")
+                            data = dataAdapter(kind).fromJson(reader)
+                        }
+                    }
+                    -1 -> {
+                        // Unknown, skip it
+                        reader.nextName()
+                        reader.skipValue()
+                    }
+                }
+            }
+            reader.endObject()
+
+            if (kind == null)
+                throw JsonDataException("Expected value at '$path.kind' to be non-null")
+            if (!hasData)
+                throw JsonDataException("Expected a value at $path.data")
+            if (data == null)
+                data = dataAdapter(kind).fromJsonValue(bufferedData ?:
+                    throw JsonDataException("Expected a non-null value at $path.data"))
+
+            return ensureInBounds(data)
+        }
+
+        /** Finds the adapter for the "data" of the given kind. The data itself is never enveloped. */
+        private fun dataAdapter(kind: String): JsonAdapter<*> {
+            dataAdapters[kind]?.let { return it }
 
             val clazz = registry[kind] ?:
                 throw IllegalArgumentException("No registered class for kind '$kind'")
-
-            val envelopeType = Types.newParameterizedType(RedditModelEnvelope::class.java, clazz)
-            val adapter = moshi.adapter<RedditModelEnvelope<*>>(envelopeType)
-            val result = adapter.fromJsonValue(json)!!
-            return ensureInBounds(result.data)
+            val adapter = moshi.adapter<Any>(clazz)
+            dataAdapters[kind] = adapter
+            return adapter
         }
 
         /**
@@ -279,6 +332,8 @@ class RedditModelAdapterFactory(
 
     /** */
     companion object {
+        private val envelopeOptions = JsonReader.Options.of("kind", "data")
+
         private inline fun <reified T> expectType(obj: Any?, path: String): T {
             if (obj == null)
                 throw JsonDataException("Expected value at '$path' to be non-null")
@@ -0,0 +1,86 @@
+package net.dean.jraw.databind
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A thread-safe pool of Strings that makes equal Strings share one instance, like [String.intern] but with a limit on
+ * how many Strings it keeps. Once it holds [maxSize] Strings, new ones are no longer added and are returned as they
+ * are, so the pool can't keep growing during a long crawl.
+ *
+ * The pool keeps count of how well it works. [savedBytes] is an estimate of the memory that was freed up by returning
+ * pooled Strings, assuming a 64-bit JVM with compressed references that stores Strings as UTF-16.
+ *
+ * @see InternedStringAdapterFactory
+ */
+class StringPool @JvmOverloads constructor(
+    /** The most Strings this pool will hold */
+    val maxSize: Int = DEFAULT_MAX_SIZE
+) {
+    private val strings = ConcurrentHashMap<String, String>()
+    private val hitCount = AtomicLong()
+    private val missCount = AtomicLong()
+    private val savedByteCount = AtomicLong()
+
+    init {
+        if (maxSize <= 0) throw IllegalArgumentException("maxSize must be greater than 0")
+    }
+
+    /** How many Strings are in the pool */
+    val size: Int
+        get() = strings.size
+
+    /** How many times a String was replaced by one from the pool */
+    val hits: Long
+        get() = hitCount.get()
+
+    /** How many times a String wasn't in the pool yet (whether it was added or not) */
+    val misses: Long
+        get() = missCount.get()
+
+    /** The share of Strings that were replaced by one from the pool, between 0 and 1 */
+    val hitRate: Double
+        get() {
+            val hits = hits
+            val total = hits + misses
+            return if (total == 0L) 0.0 else hits.toDouble() / total
+        }
+
+    /** Roughly how many bytes were saved by returning pooled Strings instead of keeping the ones that were read */
+    val savedBytes: Long
+        get() = savedByteCount.get()
+
+    /** Returns the pooled String equal to [value], adding [value] to the pool first if it's not full yet */
+    fun intern(value: String): String {
+        val pooled = strings[value]
+        if (pooled != null) {
+            hitCount.incrementAndGet()
+            savedByteCount.addAndGet(estimateSize(value))
+            return pooled
+        }
+
+        missCount.incrementAndGet()
+        if (strings.size >= maxSize) return value
+        return strings.putIfAbsent(value, value) ?: value
+    }
+
+    /** Removes every String from the pool and resets the statistics */
+    fun clear() {
+        strings.clear()
+        hitCount.set(0)
+        missCount.set(0)
+        savedByteCount.set(0)
+    }
+
+    override fun toString() =
+        "StringPool(size=$size, maxSize=$maxSize, hits=$hits, misses=$misses, savedBytes=$savedBytes)"
+
+    /** */
+    companion object {
+        /** Enough for the subreddits, domains and authors of a large crawl */
+        const val DEFAULT_MAX_SIZE = 50_000
+
+        /** A String object (24 bytes) plus its char array (16 bytes + 2 per char, padded to 8 bytes) */
+        private fun estimateSize(value: String): Long = 24L + ((16L + 2L * value.length + 7L) and 7L.inv())
+    }
+}
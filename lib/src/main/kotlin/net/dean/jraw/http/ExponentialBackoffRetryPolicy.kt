@@ -0,0 +1,78 @@
+package net.dean.jraw.http
+
+import java.io.IOException
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Retries server errors (5XX), "429 Too Many Requests", and connection-level failures using exponential backoff with
+ * "decorrelated jitter," as described [here](https://aws.amazon.com/blogs/architecture/exponential-backoff-and-jitter/).
+ *
+ * Each delay is picked at random between [baseDelay] and three times the previous delay, and is never longer than
+ * [maxDelay]. This spreads out retries from many clients instead of having all of them hit reddit again at the same
+ * time after an outage.
+ *
+ * Connection-level failures (IOExceptions) are only retried for idempotent methods (GET, HEAD, PUT and DELETE) unless
+ * [retryNonIdempotent] is true. Such a request might have reached reddit before failing, and sending a POST or PATCH
+ * again could, for example, submit the same comment twice. Error responses are always retried, since reddit didn't
+ * process the request.
+ *
+ * If the response includes a `Retry-After` header (either in seconds or as an HTTP date), the client will wait at
+ * least that long. If the server asks the client to wait longer than [maxDelay], the request is not retried at all.
+ */
+class ExponentialBackoffRetryPolicy @JvmOverloads constructor(
+    baseDelay: Long = DEFAULT_BASE_DELAY,
+    maxDelay: Long = DEFAULT_MAX_DELAY,
+    unit: TimeUnit = TimeUnit.MILLISECONDS,
+    private val random: Random = Random(),
+    /** If requests with methods that aren't idempotent should be retried after an IOException as well */
+    val retryNonIdempotent: Boolean = false
+) : RetryPolicy {
+    /** Minimum amount of milliseconds to wait before retrying */
+    val baseDelay = unit.toMillis(baseDelay)
+
+    /** Maximum amount of milliseconds to wait before retrying */
+    val maxDelay = unit.toMillis(maxDelay)
+
+    init {
+        if (this.baseDelay < 0) throw IllegalArgumentException("baseDelay must be non-negative")
+        if (this.maxDelay < this.baseDelay) throw IllegalArgumentException("maxDelay must be at least baseDelay")
+    }
+
+    override fun retryDelay(req: HttpRequest, attempt: Int, previousDelay: Long, res: HttpResponse?, error: IOException?): Long {
+        if (res != null && !isRetryable(res.code)) return -1
+        if (res == null && !retryNonIdempotent && req.method.toUpperCase() !in IDEMPOTENT_METHODS) return -1
+
+        val upper = Math.min(maxDelay, Math.max(baseDelay, previousDelay) * 3)
+        val jittered = if (upper <= baseDelay) baseDelay else baseDelay + (random.nextDouble() * (upper - baseDelay)).toLong()
+
+        val retryAfter = if (res == null) -1 else retryAfter(res)
+        if (retryAfter > maxDelay) return -1
+
+        return Math.max(jittered, retryAfter)
+    }
+
+    private fun isRetryable(code: Int) = code == 429 || code in 500..599
+
+    /** Returns how many milliseconds the server asked us to wait, or -1 if it didn't say */
+    private fun retryAfter(res: HttpResponse): Long {
+        val value = res.raw.header("Retry-After") ?: return -1
+
+        val seconds = value.trim().toLongOrNull()
+        if (seconds != null) return Math.max(0, TimeUnit.SECONDS.toMillis(seconds))
+
+        val date = res.raw.headers().getDate("Retry-After") ?: return -1
+        return Math.max(0, date.time - System.currentTimeMillis())
+    }
+
+    /** */
+    companion object {
+        /** Wait at least one second before retrying */
+        const val DEFAULT_BASE_DELAY = 1000L
+
+        /** Never wait more than 30 seconds before retrying */
+        const val DEFAULT_MAX_DELAY = 30_000L
+
+        private val IDEMPOTENT_METHODS = setOf("GET", "HEAD", "PUT", "DELETE")
+    }
+}
@@ -5,6 +5,11 @@ import net.dean.jraw.JrawUtils
 import net.dean.jraw.databind.Enveloped
 import okhttp3.Request
 import okhttp3.Response
+import okio.Buffer
+import okio.BufferedSource
+import okio.Okio
+import okio.Source
+import okio.Timeout
 
 /**
  * This class wraps OkHttp's `Response` class to provide some convenience methods and properties
@@ -21,8 +26,22 @@ data class HttpResponse(val raw: Response) {
     /** If the status code is in the range 200..299 */
     val successful: Boolean = raw.isSuccessful
 
-    /** Lazily initialized response body, or an empty string if there was none */
-    val body: String by lazy { raw.body()?.string() ?: "" }
+    private val lazyBody = lazy {
+        if (streamed)
+            throw IllegalStateException("The response body has already been consumed by deserializeWith()")
+        raw.body()?.string() ?: ""
+    }
+
+    @Volatile private var streamed = false
+
+    /**
+     * Lazily initialized response body, or an empty string if there was none.
+     *
+     * If the body was deserialized before this property was ever accessed, the model was read straight from the
+     * network and the body is no longer available. Accessing this property in that case will throw an
+     * IllegalStateException. Use [peekBody] to look at the body without consuming it.
+     */
+    val body: String by lazyBody
 
     /**
      * Uses Jackson to deserialize the body of this response to a given type
@@ -44,8 +63,73 @@ data class HttpResponse(val raw: Response) {
         return deserializeWith(JrawUtils.adapter(Enveloped::class.java))
     }
 
-    /** Deserializes the response body with the given adapter */
+    /**
+     * Deserializes the response body with the given adapter. If [body] hasn't been accessed yet, the model is read
+     * directly from the response's source without ever creating a String out of the entire body.
+     */
     fun <T> deserializeWith(adapter: JsonAdapter<T>): T {
-        return adapter.fromJson(body)!!
+        if (lazyBody.isInitialized())
+            return adapter.fromJson(body)!!
+
+        val responseBody = raw.body() ?: return adapter.fromJson(body)!!
+        streamed = true
+        return responseBody.use { adapter.fromJson(it.source())!! }
+    }
+
+    /**
+     * Returns at most [byteCount] bytes from the beginning of the response body without consuming it. The returned
+     * Buffer contains less than [byteCount] bytes only if the body itself is shorter than that.
+     */
+    fun peekBody(byteCount: Long): Buffer {
+        if (lazyBody.isInitialized()) {
+            val all = Buffer().writeUtf8(body)
+            if (all.size() <= byteCount) return all
+            return Buffer().also { it.write(all, byteCount) }
+        }
+
+        if (streamed)
+            throw IllegalStateException("The response body has already been consumed by deserializeWith()")
+
+        val source = raw.body()?.source() ?: return Buffer()
+        source.request(byteCount)
+        val buffered = source.buffer()
+        return Buffer().also { buffered.copyTo(it, 0, minOf(byteCount, buffered.size())) }
+    }
+
+    /**
+     * Returns a source that reads the response body from the beginning without consuming it. Unlike [peekBody], only
+     * as much of the body as is actually read from the returned source is loaded, so it's cheap to look at the start
+     * of a large body. The body can't be peeked at like this after it has been consumed by [deserializeWith], and the
+     * returned source shouldn't be used after that either.
+     */
+    fun peekSource(): BufferedSource {
+        if (lazyBody.isInitialized())
+            return Buffer().writeUtf8(body)
+
+        if (streamed)
+            throw IllegalStateException("The response body has already been consumed by deserializeWith()")
+
+        val source = raw.body()?.source() ?: return Buffer()
+        return Okio.buffer(PeekSource(source))
+    }
+
+    /** Reads the bytes of [upstream] without consuming them by copying them out of its buffer */
+    private class PeekSource(private val upstream: BufferedSource) : Source {
+        private var offset = 0L
+
+        override fun read(sink: Buffer, byteCount: Long): Long {
+            if (!upstream.request(offset + 1)) return -1
+
+            val buffered = upstream.buffer()
+            val count = minOf(byteCount, buffered.size() - offset)
+            buffered.copyTo(sink, offset, count)
+            offset += count
+            return count
+        }
+
+        override fun timeout(): Timeout = upstream.timeout()
+
+        /** The upstream source is still needed by whoever is going to consume the body */
+        override fun close() {}
     }
 }
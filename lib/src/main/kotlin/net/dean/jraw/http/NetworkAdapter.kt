@@ -2,6 +2,7 @@ package net.dean.jraw.http
 
 import okhttp3.WebSocket
 import okhttp3.WebSocketListener
+import java.util.concurrent.CompletableFuture
 
 /**
  * Standard interface for sending HTTP requests and opening WebSocket connections.
@@ -15,6 +16,16 @@ interface NetworkAdapter {
     /** Executes the HTTP request represended by the given data */
     fun execute(r: HttpRequest): HttpResponse
 
+    /**
+     * Executes the HTTP request without blocking the calling thread. The returned future completes with the response,
+     * or exceptionally if the request couldn't be executed (e.g. an IOException). Cancelling the future should cancel
+     * the underlying request where possible.
+     *
+     * The default implementation simply runs [execute] on the common ForkJoinPool. Implementations that are backed by
+     * a non-blocking client should override this method.
+     */
+    fun executeAsync(r: HttpRequest): CompletableFuture<HttpResponse> = CompletableFuture.supplyAsync { execute(r) }
+
     /** Attempts to open a connection to a WebSocket */
     fun connect(url: String, listener: WebSocketListener): WebSocket
 }
@@ -1,6 +1,8 @@
 package net.dean.jraw.http
 
 import okhttp3.*
+import java.io.IOException
+import java.util.concurrent.CompletableFuture
 
 /**
  * [NetworkAdapter] implementation backed by Square's fantastic [OkHttp](https://square.github.io/okhttp/)
@@ -16,6 +18,32 @@ class OkHttpNetworkAdapter @JvmOverloads constructor(
         return HttpResponse(createCall(r).execute())
     }
 
+    /**
+     * Enqueues the request with OkHttp's [Dispatcher] instead of blocking the current thread. Note that by default,
+     * OkHttp will only run 5 requests to the same host at once. Provide a customized OkHttpClient to change that.
+     */
+    override fun executeAsync(r: HttpRequest): CompletableFuture<HttpResponse> {
+        val future = CompletableFuture<HttpResponse>()
+        val call = createCall(r)
+
+        call.enqueue(object : Callback {
+            override fun onResponse(call: Call, response: Response) {
+                // The future may have been cancelled while the request was in flight
+                if (!future.complete(HttpResponse(response)))
+                    response.close()
+            }
+
+            override fun onFailure(call: Call, e: IOException) {
+                future.completeExceptionally(e)
+            }
+        })
+
+        // Let the caller abort the request by cancelling the future
+        future.whenComplete { _, _ -> if (future.isCancelled) call.cancel() }
+
+        return future
+    }
+
     override fun connect(url: String, listener: WebSocketListener): WebSocket {
         val client = OkHttpClient()
 
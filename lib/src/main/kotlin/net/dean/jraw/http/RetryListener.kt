@@ -0,0 +1,16 @@
+package net.dean.jraw.http
+
+import java.io.IOException
+
+/** Gets notified every time a RedditClient decides to retry a request */
+interface RetryListener {
+    /**
+     * Called right before the client starts waiting to send [r] again.
+     *
+     * @param attempt How many times the request has been sent so far (starting at 1)
+     * @param delay How many milliseconds the client is going to wait before the next attempt
+     * @param res The response to the failed attempt, or null if it failed because of [error]
+     * @param error The exception that the failed attempt threw, or null if a response was received
+     */
+    fun onRetry(r: HttpRequest, attempt: Int, delay: Long, res: HttpResponse?, error: IOException?)
+}
@@ -0,0 +1,29 @@
+package net.dean.jraw.http
+
+import java.io.IOException
+
+/**
+ * A RetryPolicy decides whether a failed request should be sent again, and how long to wait before doing so.
+ *
+ * A request is considered to have failed if the [NetworkAdapter] threw an IOException or if it returned a response
+ * that might succeed when sent again (e.g. a 5XX or 429 status code). Regardless of the policy, a RedditClient will
+ * never retry a request more than [net.dean.jraw.RedditClient.retryLimit] times.
+ *
+ * Keep in mind that a request that failed with an IOException (like a read timeout) might have reached reddit anyway.
+ * Sending a request that isn't idempotent (like a POST that submits a comment) again could then repeat its effects.
+ *
+ * @see ExponentialBackoffRetryPolicy
+ */
+interface RetryPolicy {
+    /**
+     * Returns how many milliseconds to wait before sending the request again, or a negative number if it shouldn't be
+     * retried at all.
+     *
+     * @param req The request that failed
+     * @param attempt How many times the request has been sent so far (starting at 1)
+     * @param previousDelay How many milliseconds were waited before the latest attempt, 0 for the first one
+     * @param res The response to the latest attempt, or null if it failed because of [error]
+     * @param error The exception that the latest attempt failed with, or null if a response was received
+     */
+    fun retryDelay(req: HttpRequest, attempt: Int, previousDelay: Long, res: HttpResponse?, error: IOException?): Long
+}
@@ -60,12 +60,31 @@ class SimpleHttpLogger @JvmOverloads constructor(
 
     override fun response(tag: HttpLogger.Tag, res: HttpResponse) {
         val contentType = formatContentType(res.raw)
-        val body = res.body.replace("\n", "")
+        val body = formatBody(res)
         val formattedTag = "[<- ${tag.requestId}]"
 
         out.writeln(truncate("$formattedTag ${res.code} $contentType: '$body'", maxLineLength))
     }
 
+    /**
+     * Returns the response body without newlines. Unless we're printing the full body anyway, only peek at as much of
+     * it as we need so that the body can still be deserialized straight from the network.
+     */
+    private fun formatBody(res: HttpResponse): String {
+        if (maxLineLength < 0) return res.body.replace("\n", "")
+
+        var byteCount = maxLineLength.toLong()
+        while (true) {
+            val preview = res.peekBody(byteCount)
+            val complete = preview.size() < byteCount
+            val text = preview.readUtf8().replace("\n", "")
+
+            // Removing newlines may have left us with less text than we can print
+            if (complete || text.length >= maxLineLength) return text
+            byteCount *= 2
+        }
+    }
+
     private fun formatContentType(res: Response): String {
         val type = res.body()?.contentType() ?: return NO_CONTENT_TYPE
         return type.type() + '/' + type.subtype()
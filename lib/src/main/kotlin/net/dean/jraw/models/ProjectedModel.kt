@@ -0,0 +1,59 @@
+package net.dean.jraw.models
+
+import java.io.Serializable
+import java.util.*
+
+/**
+ * A model of which only the properties of a [Projection] have been read.
+ *
+ * Values are kept the way they appear in the JSON: strings, numbers (as doubles), booleans, lists, maps or null. The
+ * typed getters convert them to what they're usually used as.
+ */
+class ProjectedModel internal constructor(
+    /** The kind of the model, e.g. "t3" for submissions. See [KindConstants]. */
+    val kind: String,
+
+    /** The projection that was used to read this model */
+    val projection: Projection,
+
+    private val values: Map<String, Any?>
+) : UniquelyIdentifiable, Serializable {
+    /** The fullname of the model, like "t3_6afe8u" */
+    val fullName: String
+        get() = getString("name") ?: throw IllegalStateException("Expected the model to have a fullname")
+
+    override val uniqueId: String
+        get() = fullName
+
+    /** Returns true if reddit sent a value for the given property, even if it was null */
+    fun has(name: String) = checkProjected(name) in values
+
+    /** Returns the value of a property as it was in the JSON, or null if it wasn't there */
+    operator fun get(name: String): Any? = values[checkProjected(name)]
+
+    fun getString(name: String): String? = get(name) as String?
+
+    fun getInt(name: String): Int? = (get(name) as Number?)?.toInt()
+
+    fun getLong(name: String): Long? = (get(name) as Number?)?.toLong()
+
+    fun getDouble(name: String): Double? = (get(name) as Number?)?.toDouble()
+
+    fun getBoolean(name: String): Boolean? = get(name) as Boolean?
+
+    /** Reads a property that contains seconds since the epoch, like "created_utc" */
+    fun getDate(name: String): Date? = getDouble(name)?.let { Date((it * 1000).toLong()) }
+
+    private fun checkProjected(name: String): String {
+        if (name !in projection.fields)
+            throw IllegalArgumentException("'$name' isn't part of $projection")
+        return name
+    }
+
+    override fun equals(other: Any?) =
+        other is ProjectedModel && other.kind == kind && other.projection == projection && other.values == values
+
+    override fun hashCode() = Objects.hash(kind, projection, values)
+
+    override fun toString() = "ProjectedModel(kind=$kind, values=$values)"
+}
@@ -0,0 +1,32 @@
+package net.dean.jraw.models
+
+import java.io.Serializable
+
+/**
+ * Describes which properties of a model to read when only a few of them are needed. Everything else is skipped while
+ * the JSON is being read, so the full model (and everything it contains, like a Submission's preview) is never created.
+ *
+ * Property names are the ones reddit uses, not the names of the getters on the models. "name" (the fullname) is always
+ * included, so that every [ProjectedModel] can be identified.
+ *
+ * ```kotlin
+ * val projection = Projection("score", "num_comments", "created_utc")
+ * val paginator = reddit.subreddit("pics").posts().build().project(projection)
+ * ```
+ *
+ * @see ProjectedModel
+ */
+class Projection(fields: Collection<String>) : Serializable {
+    /** The names of the properties to read, starting with "name" */
+    val fields: Set<String> = LinkedHashSet<String>(fields.size + 1).apply {
+        add("name")
+        addAll(fields)
+    }
+
+    /** Creates a Projection that reads the given properties and "name" */
+    constructor(vararg fields: String) : this(fields.asList())
+
+    override fun equals(other: Any?) = other is Projection && other.fields == fields
+    override fun hashCode() = fields.hashCode()
+    override fun toString() = "Projection(fields=$fields)"
+}
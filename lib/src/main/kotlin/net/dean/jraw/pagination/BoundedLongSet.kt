@@ -0,0 +1,105 @@
+package net.dean.jraw.pagination
+
+/**
+ * A set of primitive longs that holds at most [capacity] elements. Once full, adding a new element evicts the oldest
+ * one. [add] and [contains] both run in constant time: elements are kept in an open-addressing hash table (linear
+ * probing) for lookups and in a ring buffer to remember insertion order.
+ *
+ * 0 is used to mark empty slots and can't be stored.
+ */
+internal class BoundedLongSet(val capacity: Int) {
+    private val ring = LongArray(capacity)
+    private var ringIndex = 0
+
+    private val table: LongArray
+    private val mask: Int
+
+    /** The amount of elements currently being stored */
+    var size = 0
+        private set
+
+    init {
+        if (capacity <= 0) throw IllegalArgumentException("capacity must be above 0")
+
+        // Keep the load factor at or below 0.5 so probe sequences stay short
+        var tableSize = 2
+        while (tableSize < capacity * 2) tableSize = tableSize shl 1
+        table = LongArray(tableSize)
+        mask = tableSize - 1
+    }
+
+    fun contains(key: Long): Boolean = indexOf(key) >= 0
+
+    /**
+     * Adds an element if it's not already present. Returns the element that had to be evicted to make room for it, or
+     * [EMPTY] if nothing was evicted.
+     */
+    fun add(key: Long): Long {
+        if (key == EMPTY) throw IllegalArgumentException("Can't store $EMPTY")
+        if (contains(key)) return EMPTY
+
+        var evicted = EMPTY
+        if (size == capacity) {
+            evicted = ring[ringIndex]
+            remove(evicted)
+        } else {
+            size++
+        }
+
+        ring[ringIndex] = key
+        if (++ringIndex == capacity) ringIndex = 0
+
+        var i = slot(key)
+        while (table[i] != EMPTY) i = (i + 1) and mask
+        table[i] = key
+
+        return evicted
+    }
+
+    private fun indexOf(key: Long): Int {
+        var i = slot(key)
+        while (true) {
+            val k = table[i]
+            if (k == EMPTY) return -1
+            if (k == key) return i
+            i = (i + 1) and mask
+        }
+    }
+
+    /** Removes a key from the table by shifting back the entries that come after it in its probe sequence */
+    private fun remove(key: Long) {
+        var hole = indexOf(key)
+        if (hole < 0) return
+
+        var i = hole
+        while (true) {
+            i = (i + 1) and mask
+            val k = table[i]
+            if (k == EMPTY) break
+
+            // Move k into the hole unless its home slot lies cyclically within (hole, i]
+            val home = slot(k)
+            val staysPut = if (hole <= i) home in (hole + 1)..i else home > hole || home <= i
+            if (!staysPut) {
+                table[hole] = k
+                hole = i
+            }
+        }
+        table[hole] = EMPTY
+    }
+
+    private fun slot(key: Long) = (mix(key) xor (mix(key) ushr 32)).toInt() and mask
+
+    /** */
+    companion object {
+        const val EMPTY = 0L
+
+        /** The finalizer from SplitMix64, spreads out keys that only differ in a few bits */
+        @JvmStatic fun mix(key: Long): Long {
+            var z = key
+            z = (z xor (z ushr 30)) * -0x40a7b892e31b1a47L
+            z = (z xor (z ushr 27)) * -0x6b2fb644ecceee15L
+            return z xor (z ushr 31)
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package net.dean.jraw.pagination
+
+import net.dean.jraw.models.UniquelyIdentifiable
+import java.util.*
+import java.util.function.Consumer
+import java.util.function.Predicate
+
+/**
+ * Iterates over the individual items of a [RedditIterable], only requesting a page once every item before it has been
+ * consumed. Iteration continues from the source's current page; call [RedditIterable.restart] beforehand to start
+ * from the first page.
+ */
+internal class ItemIterator<T : UniquelyIdentifiable>(private val source: RedditIterable<T>) : Iterator<T> {
+    private var page: Iterator<T> = Collections.emptyIterator()
+
+    override fun hasNext(): Boolean {
+        while (!page.hasNext()) {
+            // No more pages
+            if (source.hasStarted() && source.current?.nextName == null) return false
+
+            // Pages can be empty without being the last one (e.g. when everything on it was removed)
+            page = source.next().children.iterator()
+        }
+
+        return true
+    }
+
+    override fun next(): T {
+        if (!hasNext()) throw NoSuchElementException()
+        return page.next()
+    }
+}
+
+/**
+ * A Spliterator over the items of a [RedditIterable] that stops at the first item that doesn't match [predicate]. No
+ * more pages are requested after that point. Pages have to be requested one after another, so this Spliterator can't be
+ * split.
+ */
+internal class ItemSpliterator<T : UniquelyIdentifiable>(
+    source: RedditIterable<T>,
+    private val predicate: Predicate<in T>? = null
+) : Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED or Spliterator.NONNULL) {
+    private val items = ItemIterator(source)
+    private var done = false
+
+    override fun tryAdvance(action: Consumer<in T>): Boolean {
+        if (done || !items.hasNext()) return false
+
+        val item = items.next()
+        if (predicate != null && !predicate.test(item)) {
+            done = true
+            return false
+        }
+
+        action.accept(item)
+        return true
+    }
+
+    override fun trySplit(): Spliterator<T>? = null
+}
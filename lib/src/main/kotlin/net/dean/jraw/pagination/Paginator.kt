@@ -6,6 +6,7 @@ import net.dean.jraw.JrawUtils
 import net.dean.jraw.RedditClient
 import net.dean.jraw.databind.Enveloped
 import net.dean.jraw.http.HttpRequest
+import net.dean.jraw.http.HttpResponse
 import net.dean.jraw.models.*
 import net.dean.jraw.pagination.Paginator.Companion.RECOMMENDED_MAX_LIMIT
 
@@ -60,9 +61,7 @@ abstract class Paginator<T : UniquelyIdentifiable> protected constructor(
         get() = _pageNumber
 
     override fun next(): Listing<T> {
-        _current = reddit.request(createNextRequest().build()).deserializeWith(adapter)
-        _pageNumber++
-
+        advance(reddit.request(createNextRequest().build()).deserializeWith(adapter))
         return _current!!
     }
 
@@ -97,6 +96,39 @@ abstract class Paginator<T : UniquelyIdentifiable> protected constructor(
     /** Creates an HTTP request to fetch the next page of data, if any. */
     protected abstract fun createNextRequest(): HttpRequest.Builder
 
+    /**
+     * Creates the request for the page that comes after the item with the given fullname, or the first page if [after]
+     * is null. Used by [PrefetchingPaginator] to request pages before [current] has caught up.
+     */
+    internal fun createRequestAfter(after: String?): HttpRequest {
+        return createNextRequest().configureUrl {
+            val url = it.removeAllQueryParameters("after")
+            if (after != null) url.addQueryParameter("after", after) else url
+        }.build()
+    }
+
+    /** Deserializes a response to a request created by [createRequestAfter] */
+    internal fun parse(res: HttpResponse): Listing<T> = res.deserializeWith(adapter)
+
+    /** Makes [listing] the current page, as if it was returned by [next] */
+    internal fun advance(listing: Listing<T>) {
+        _current = listing
+        _pageNumber++
+    }
+
+    /**
+     * Wraps this Paginator in one that requests up to [depth] pages in the background before they're asked for. Useful
+     * when processing each page takes a while.
+     */
+    @JvmOverloads
+    fun prefetching(depth: Int = 1) = PrefetchingPaginator(this, depth)
+
+    /**
+     * Creates a Paginator that requests the same pages as this one, but only reads the properties in the [projection]
+     * of each item.
+     */
+    fun project(projection: Projection) = ProjectingPaginator(this, projection)
+
     /**
      * Base for all Paginator.Builder subclasses
      */
@@ -0,0 +1,134 @@
+package net.dean.jraw.pagination
+
+import net.dean.jraw.models.Listing
+import net.dean.jraw.models.UniquelyIdentifiable
+import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
+
+/**
+ * Wraps a [Paginator] and requests the next [depth] pages in the background, so that the network and the code
+ * processing each page can work at the same time.
+ *
+ * Since every page depends on the one before it, the next page is requested as soon as the previous one has been
+ * received, until [depth] pages are waiting to be consumed. Requests are sent using [net.dean.jraw.RedditClient.requestAsync], so
+ * they're still rate limited as usual. Calling [restart] cancels any pages still being fetched.
+ *
+ * ```kotlin
+ * val paginator = reddit.subreddit("pics").posts().build().prefetching(depth = 2)
+ * for (page in paginator) {
+ *     // While this page is being processed, the next two are being fetched
+ * }
+ * ```
+ *
+ * This class is not thread-safe; only one thread should consume pages at a time.
+ */
+class PrefetchingPaginator<T : UniquelyIdentifiable> internal constructor(
+    /** The Paginator responsible for building requests and keeping track of the current page */
+    val paginator: Paginator<T>,
+
+    /** How many pages to request before they're asked for */
+    val depth: Int
+) : RedditIterable<T> {
+    /** Pages that have been requested but not yet consumed, in order */
+    private val pending: Deque<CompletableFuture<Listing<T>?>> = ArrayDeque()
+
+    /** Requests that are still in flight, so they can be cancelled */
+    private val requests: MutableSet<Future<*>> = Collections.synchronizedSet(mutableSetOf())
+
+    init {
+        if (depth < 1) throw IllegalArgumentException("depth must be at least 1")
+    }
+
+    override val current: Listing<T>?
+        get() = paginator.current
+
+    override val pageNumber: Int
+        get() = paginator.pageNumber
+
+    override fun next(): Listing<T> {
+        val prefetched = pending.pollFirst()
+
+        val listing = if (prefetched == null) {
+            // Nothing was prefetched, most likely because we haven't started yet or the last page had no next page
+            paginator.next()
+        } else {
+            val result = try {
+                prefetched.get()
+            } catch (e: ExecutionException) {
+                // Everything after this page depended on it, start over from the current page next time
+                cancelPending()
+                throw e.cause ?: e
+            }
+
+            if (result == null) paginator.next() else result.also { paginator.advance(it) }
+        }
+
+        prefetch()
+        return listing
+    }
+
+    override fun restart() {
+        cancelPending()
+        paginator.restart()
+    }
+
+    override fun iterator(): Iterator<Listing<T>> = object : Iterator<Listing<T>> {
+        override fun hasNext() = !hasStarted() || current?.nextName != null
+        override fun next() = this@PrefetchingPaginator.next()
+    }
+
+    override fun hasStarted() = paginator.hasStarted()
+
+    override fun accumulate(maxPages: Int): List<Listing<T>> {
+        if (maxPages < -1)
+            throw IllegalArgumentException("Expecting maxPages to be -1 or greater")
+
+        val lists = mutableListOf<Listing<T>>()
+        var i = 0
+        val it = iterator()
+        while ((maxPages == -1 || ++i <= maxPages) && it.hasNext())
+            lists.add(it.next())
+        return lists
+    }
+
+    override fun accumulateMerged(maxPages: Int): List<T> = accumulate(maxPages).flatten()
+
+    /** Makes sure [depth] pages have been requested past the current one */
+    private fun prefetch() {
+        // Nothing left to prefetch after the last page
+        if (pending.isEmpty() && current?.nextName == null) return
+
+        while (pending.size < depth) {
+            val last = pending.peekLast()
+            pending.addLast(if (last == null) {
+                fetch(current!!.nextName!!)
+            } else {
+                // Wait for the previous page to figure out where the next one starts
+                last.thenCompose { prev ->
+                    val after = prev?.nextName
+                    if (after == null) CompletableFuture.completedFuture<Listing<T>?>(null) else fetch(after)
+                }
+            })
+        }
+    }
+
+    private fun fetch(after: String): CompletableFuture<Listing<T>?> {
+        val request = paginator.reddit.requestAsync(paginator.createRequestAfter(after))
+        requests.add(request)
+        return request
+            .whenComplete { _, _ -> requests.remove(request) }
+            .thenApply<Listing<T>?> { paginator.parse(it) }
+    }
+
+    private fun cancelPending() {
+        pending.forEach { it.cancel(true) }
+        pending.clear()
+
+        // Cancelling the chained futures doesn't cancel the requests they're waiting on. Copy the set first since
+        // cancelling a request removes it from the set.
+        val inFlight = synchronized(requests) { requests.toList() }
+        inFlight.forEach { it.cancel(true) }
+    }
+}
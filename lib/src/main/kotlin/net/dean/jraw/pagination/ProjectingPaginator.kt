@@ -0,0 +1,72 @@
+package net.dean.jraw.pagination
+
+import net.dean.jraw.databind.ProjectionAdapter
+import net.dean.jraw.models.Listing
+import net.dean.jraw.models.ProjectedModel
+import net.dean.jraw.models.Projection
+import net.dean.jraw.models.UniquelyIdentifiable
+
+/**
+ * Requests the same pages as a [Paginator], but reads every item as a [ProjectedModel]. Useful when crawling lots of
+ * pages while only needing a few properties of each item, since the full models are never created.
+ *
+ * ```kotlin
+ * val paginator = reddit.subreddit("pics").posts().build().project(Projection("score", "num_comments"))
+ * for (page in paginator) {
+ *     for (post in page) println("${post.fullName}: ${post.getInt("score")}")
+ * }
+ * ```
+ *
+ * The wrapped Paginator is only used to build requests, its own [Paginator.current] never changes.
+ */
+class ProjectingPaginator<T : UniquelyIdentifiable> internal constructor(
+    /** The Paginator responsible for building requests */
+    val paginator: Paginator<T>,
+
+    /** Which properties to read */
+    val projection: Projection
+) : RedditIterable<ProjectedModel> {
+    private val adapter = ProjectionAdapter.listing(projection)
+    private var _current: Listing<ProjectedModel>? = null
+    private var _pageNumber = 0
+
+    override val current: Listing<ProjectedModel>?
+        get() = _current
+
+    override val pageNumber: Int
+        get() = _pageNumber
+
+    override fun next(): Listing<ProjectedModel> {
+        val request = paginator.createRequestAfter(_current?.nextName)
+        val listing = paginator.reddit.request(request).deserializeWith(adapter)
+        _current = listing
+        _pageNumber++
+        return listing
+    }
+
+    override fun restart() {
+        _current = null
+        _pageNumber = 0
+    }
+
+    override fun iterator(): Iterator<Listing<ProjectedModel>> = object : Iterator<Listing<ProjectedModel>> {
+        override fun hasNext() = !hasStarted() || _current?.nextName != null
+        override fun next() = this@ProjectingPaginator.next()
+    }
+
+    override fun hasStarted() = _current != null && _pageNumber > 0
+
+    override fun accumulate(maxPages: Int): List<Listing<ProjectedModel>> {
+        if (maxPages < -1)
+            throw IllegalArgumentException("Expecting maxPages to be -1 or greater")
+
+        val lists = mutableListOf<Listing<ProjectedModel>>()
+        var i = 0
+        val it = iterator()
+        while ((maxPages == -1 || ++i <= maxPages) && it.hasNext())
+            lists.add(it.next())
+        return lists
+    }
+
+    override fun accumulateMerged(maxPages: Int): List<ProjectedModel> = accumulate(maxPages).flatten()
+}
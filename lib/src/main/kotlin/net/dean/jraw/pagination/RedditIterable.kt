@@ -2,6 +2,8 @@ package net.dean.jraw.pagination
 
 import net.dean.jraw.models.Listing
 import net.dean.jraw.models.UniquelyIdentifiable
+import java.util.function.Predicate
+import java.util.stream.StreamSupport
 
 /**
  * A standard interface for interacting with paginated data provided by the reddit API.
@@ -35,6 +37,36 @@ interface RedditIterable<T : UniquelyIdentifiable> : Iterable<Listing<T>> {
     /** Does the same thing as [accumulate], but merges all Listing children into one List */
     fun accumulateMerged(maxPages: Int): List<T>
 
+    /**
+     * Returns an Iterator over every item on every page. A page is only requested once every item before it has been
+     * consumed, so stopping early means no more requests are sent. Iteration continues from the current page; call
+     * [restart] first to start from the beginning.
+     */
+    fun items(): Iterator<T> = ItemIterator(this)
+
+    /** Returns the same items as [items], as a lazy Sequence */
+    fun itemSequence(): Sequence<T> = items().asSequence()
+
+    /**
+     * Returns a sequential `java.util.stream.Stream` of the same items as [items]. Pages are requested on demand, so
+     * short-circuiting operations such as `findFirst()`, `anyMatch()`, and `limit()` stop sending requests as soon as
+     * they're done.
+     */
+    fun itemStream(): java.util.stream.Stream<T> = StreamSupport.stream(ItemSpliterator(this), false)
+
+    /**
+     * Like [itemStream], but ends at the first item that doesn't match [predicate] (i.e. Java 9's `takeWhile`). Useful
+     * for time-bounded crawls:
+     *
+     * ```java
+     * Date cutoff = ...;
+     * paginator.itemStreamWhile(post -> post.getCreated().after(cutoff))
+     *     .forEach(...);
+     * ```
+     */
+    fun itemStreamWhile(predicate: Predicate<in T>): java.util.stream.Stream<T> =
+        StreamSupport.stream(ItemSpliterator(this, predicate), false)
+
     /** Returns a Stream for this data using a [ConstantBackoffStrategy] using the default settings */
     fun stream() = stream(ConstantBackoffStrategy())
 
@@ -0,0 +1,71 @@
+package net.dean.jraw.pagination
+
+/**
+ * A space-efficient way of remembering roughly the last [expectedInsertions] 64-bit hashes. [mightContain] never
+ * returns false for a hash that's being remembered, but may return true for one that was never added, with a
+ * probability of about [falsePositiveRate].
+ *
+ * Bloom filters can't forget individual elements, so this class uses two generations. Once the current generation has
+ * seen half of [expectedInsertions] hashes, the older generation is dropped and the current one takes its place.
+ */
+internal class RotatingBloomFilter(val expectedInsertions: Int, val falsePositiveRate: Double) {
+    private val generationSize = Math.max(1, expectedInsertions / 2)
+    private val numBits: Long
+    private val numHashes: Int
+
+    private var current: LongArray
+    private var previous: LongArray
+    private var currentCount = 0
+
+    init {
+        if (expectedInsertions <= 0) throw IllegalArgumentException("expectedInsertions must be above 0")
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw IllegalArgumentException("falsePositiveRate must be between 0 and 1 (exclusive)")
+
+        // Both generations are checked, so each one gets half of the allowed false positive rate
+        val p = falsePositiveRate / 2
+        val ln2 = Math.log(2.0)
+        numBits = Math.max(64, Math.ceil(-generationSize * Math.log(p) / (ln2 * ln2)).toLong())
+        numHashes = Math.max(1, Math.round(numBits.toDouble() / generationSize * ln2).toInt())
+
+        current = newGeneration()
+        previous = newGeneration()
+    }
+
+    fun add(hash: Long) {
+        if (currentCount >= generationSize) {
+            previous = current
+            current = newGeneration()
+            currentCount = 0
+        }
+
+        forEachBit(hash) { current.set(it) }
+        currentCount++
+    }
+
+    fun mightContain(hash: Long) = contains(current, hash) || contains(previous, hash)
+
+    private fun contains(bits: LongArray, hash: Long): Boolean {
+        forEachBit(hash) { if (!bits.get(it)) return false }
+        return true
+    }
+
+    /** Derives [numHashes] bit indices from one 64-bit hash using double hashing */
+    private inline fun forEachBit(hash: Long, action: (Long) -> Unit) {
+        val h = BoundedLongSet.mix(hash)
+        val h1 = h.toInt().toLong() and 0xFFFFFFFFL
+        val h2 = (h ushr 32) or 1
+        for (i in 0 until numHashes) {
+            action(Math.floorMod(h1 + i * h2, numBits))
+        }
+    }
+
+    private fun newGeneration() = LongArray(((numBits + 63) / 64).toInt())
+
+    private fun LongArray.set(bit: Long) {
+        val i = (bit ushr 6).toInt()
+        this[i] = this[i] or (1L shl (bit and 63).toInt())
+    }
+
+    private fun LongArray.get(bit: Long) = this[(bit ushr 6).toInt()] and (1L shl (bit and 63).toInt()) != 0L
+}
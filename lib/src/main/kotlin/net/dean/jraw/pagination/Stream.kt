@@ -13,11 +13,19 @@ import net.dean.jraw.models.UniquelyIdentifiable
 class Stream<out T : UniquelyIdentifiable> @JvmOverloads constructor(
     private val dataSource: RedditIterable<T>,
     private val backoff: BackoffStrategy = ConstantBackoffStrategy(),
-    historySize: Int = 500
+    /** How many of the most recently seen items are remembered exactly */
+    historySize: Int = 500,
+    /**
+     * If above 0, items that no longer fit in the exact history are remembered by a Bloom filter for roughly this many
+     * more items. Useful for very large histories, since each item only takes a few bits.
+     */
+    bloomFilterSize: Int = 0,
+    /** How often the Bloom filter may mistake a new item for one that was already seen */
+    falsePositiveRate: Double = StreamHistory.DEFAULT_FALSE_POSITIVE_RATE
 ) : Iterator<T> {
 
     /** Keeps track of the uniqueIds we've seen recently */
-    private val history = RotatingSearchList<String>(historySize)
+    private val history = StreamHistory(historySize, bloomFilterSize, falsePositiveRate)
     private var currentIterator: Iterator<T>? = null
     private var resumeTimeMillis = -1L
 
@@ -0,0 +1,89 @@
+package net.dean.jraw.pagination
+
+/**
+ * Keeps track of the unique IDs a [Stream] has seen recently.
+ *
+ * The [historySize] most recent IDs are remembered exactly. Fullnames (e.g. "t3_8xwlg9") are decoded from base 36 and
+ * stored as primitive longs in a [BoundedLongSet]; anything else is stored in an insertion-ordered map. Adding and
+ * looking up IDs takes constant time regardless of the history size.
+ *
+ * If [bloomFilterSize] is above 0, IDs that are evicted from the exact history are remembered by a
+ * [RotatingBloomFilter] for roughly [bloomFilterSize] more insertions. This allows remembering millions of IDs using
+ * very little memory, at the cost of occasionally thinking a new ID has already been seen (at most about
+ * [falsePositiveRate] of the time).
+ */
+internal class StreamHistory(
+    val historySize: Int,
+    val bloomFilterSize: Int = 0,
+    val falsePositiveRate: Double = DEFAULT_FALSE_POSITIVE_RATE
+) {
+    private val bloom = if (bloomFilterSize > 0) RotatingBloomFilter(bloomFilterSize, falsePositiveRate) else null
+    private val fullNames = BoundedLongSet(historySize)
+    private val others = object : LinkedHashMap<String, Boolean>() {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Boolean>): Boolean {
+            if (size <= historySize) return false
+            bloom?.add(hash(eldest.key))
+            return true
+        }
+    }
+
+    fun contains(id: String): Boolean {
+        val encoded = encodeFullName(id)
+        val exact = if (encoded != null) fullNames.contains(encoded) else others.containsKey(id)
+        return exact || (bloom != null && bloom.mightContain(encoded ?: hash(id)))
+    }
+
+    fun add(id: String) {
+        val encoded = encodeFullName(id)
+        if (encoded != null) {
+            val evicted = fullNames.add(encoded)
+            if (evicted != BoundedLongSet.EMPTY) bloom?.add(evicted)
+        } else {
+            others[id] = true
+        }
+    }
+
+    /** */
+    companion object {
+        const val DEFAULT_FALSE_POSITIVE_RATE = 0.001
+
+        /** IDs longer than this can't be represented in the bits left over after the kind */
+        private const val MAX_ID_LENGTH = 11
+
+        /**
+         * Turns a fullname like "t3_8xwlg9" into a unique, non-zero long, or returns null if the given string isn't a
+         * fullname. The kind digit is stored in the bits above the base 36 ID.
+         */
+        @JvmStatic internal fun encodeFullName(fullName: String): Long? {
+            val len = fullName.length
+            if (len < 4 || len > 3 + MAX_ID_LENGTH) return null
+            if (fullName[0] != 't' || fullName[1] !in '1'..'9' || fullName[2] != '_') return null
+
+            // A leading zero would make two different strings decode to the same number
+            if (fullName[3] == '0') return null
+
+            var id = 0L
+            for (i in 3 until len) {
+                val c = fullName[i]
+                val digit = when (c) {
+                    in '0'..'9' -> c - '0'
+                    in 'a'..'z' -> c - 'a' + 10
+                    else -> return null
+                }
+                id = id * 36 + digit
+            }
+
+            return ((fullName[1] - '0').toLong() shl 57) or id
+        }
+
+        /** 64-bit FNV-1a hash, used for IDs that aren't fullnames */
+        @JvmStatic private fun hash(id: String): Long {
+            var h = -0x340d631b7bdddcdbL
+            for (c in id) {
+                h = h xor c.toLong()
+                h *= 0x100000001b3L
+            }
+            return h
+        }
+    }
+}
@@ -1,42 +1,110 @@
 package net.dean.jraw.ratelimit
 
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.LockSupport
+import java.util.concurrent.locks.ReentrantLock
 
 /**
  * The goal of this class is to fill in some boilerplate when it comes to creating RateLimiter implementations. This
- * class overrides the [acquire] method with a generic implementation.
+ * class implements the blocking [acquire] and [tryAcquire] methods on top of the non-blocking [tryAcquire].
+ *
+ * Threads waiting for permits are served in FIFO order. Only the thread at the head of the queue checks for permits;
+ * it parks until [nanosUntilNextPermit] says more permits should be available, while every other thread stays parked
+ * until it reaches the head of the queue. Waiting threads therefore use next to no CPU time.
+ *
+ * Note that calling the non-blocking [tryAcquire] directly doesn't wait in line.
  */
 abstract class AbstractRateLimiter : RateLimiter {
+    /** Fair lock, only held by the thread at the head of the line */
+    private val queue = ReentrantLock(true)
+    @Volatile private var head: Thread? = null
+
+    /** How many threads are currently waiting for permits */
+    internal val waitingThreads: Int
+        get() = queue.queueLength + (if (head != null) 1 else 0)
+
+    /**
+     * If [tryAcquire] can safely be called by several threads at the same time. Only then does [acquire] try to get
+     * permits right away before getting in line. Otherwise, [acquire] only calls [tryAcquire] while holding the lock
+     * that keeps the line in order, so subclasses don't have to synchronize it themselves.
+     */
+    protected open val threadSafeTryAcquire: Boolean = false
+
     override fun acquire(permits: Long) {
-        while (true) {
-            if (tryAcquire(permits)) break
+        // Don't bother getting in line if nobody else is waiting and there are permits to spare
+        if (threadSafeTryAcquire && head == null && !queue.hasQueuedThreads() && tryAcquire(permits)) return
 
-            // Sleep for the smallest unit of time possible so we allow other threads to run
-            suspend(1, TimeUnit.NANOSECONDS)
+        var interrupted = false
+        queue.lock()
+        try {
+            head = Thread.currentThread()
+            while (!tryAcquire(permits)) {
+                LockSupport.parkNanos(this, parkTime(permits))
+                // acquire() isn't interruptible, restore the flag once we're done
+                if (Thread.interrupted()) interrupted = true
+            }
+        } finally {
+            head = null
+            queue.unlock()
+            if (interrupted) Thread.currentThread().interrupt()
         }
     }
 
-    /** Adapted (read: copied) from Guava's Uninterruptibles.sleepUninterruptibly() */
-    private fun suspend(sleepFor: Long, unit: TimeUnit) {
-        var interrupted = false
+    /**
+     * Acquires [permits] permits, waiting up to [timeout] for them to become available. Returns true if the permits
+     * were acquired and false if the timeout elapsed first. Waiting threads are served in the same order as threads
+     * waiting in [acquire].
+     *
+     * @throws InterruptedException If the current thread is interrupted while waiting
+     */
+    @Throws(InterruptedException::class)
+    fun tryAcquire(permits: Long, timeout: Long, unit: TimeUnit): Boolean {
+        val deadline = System.nanoTime() + unit.toNanos(timeout)
+
+        // Wait in line
+        if (!queue.tryLock(timeout, unit)) return false
         try {
-            var remainingNanos = unit.toNanos(sleepFor)
-            val end = System.nanoTime() + remainingNanos
+            head = Thread.currentThread()
             while (true) {
-                try {
-                    // TimeUnit.suspend() treats negative timeouts just like zero.
-                    TimeUnit.NANOSECONDS.sleep(remainingNanos)
-                    return
-                } catch (e: InterruptedException) {
-                    interrupted = true
-                    remainingNanos = end - System.nanoTime()
-                }
+                if (tryAcquire(permits)) return true
 
+                val remaining = deadline - System.nanoTime()
+                if (remaining <= 0) return false
+
+                LockSupport.parkNanos(this, Math.min(remaining, parkTime(permits)))
+                if (Thread.interrupted()) throw InterruptedException()
             }
         } finally {
-            if (interrupted) {
-                Thread.currentThread().interrupt()
-            }
+            head = null
+            queue.unlock()
         }
     }
+
+    /**
+     * Returns how many nanoseconds to wait until it's worth checking for [permits] permits again. This doesn't have to
+     * be exact, a waiting thread simply calls [tryAcquire] again after this amount of time. Subclasses should override
+     * this method when they know when their next permit will become available; the default implementation waits one
+     * millisecond.
+     */
+    protected open fun nanosUntilNextPermit(permits: Long): Long = DEFAULT_PARK_NANOS
+
+    /**
+     * Wakes up the thread waiting for permits (if any) so that it checks for permits right away instead of waiting for
+     * the time returned by [nanosUntilNextPermit]. Subclasses should call this when permits are added outside of their
+     * usual schedule, for example in [refill].
+     */
+    protected fun permitsAvailable() {
+        val t = head
+        if (t != null) LockSupport.unpark(t)
+    }
+
+    private fun parkTime(permits: Long) = Math.max(MIN_PARK_NANOS, nanosUntilNextPermit(permits))
+
+    /** */
+    companion object {
+        private val DEFAULT_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1)
+
+        /** Avoid spinning when the next permit is (supposedly) available right now but another thread beat us to it */
+        private val MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50)
+    }
 }
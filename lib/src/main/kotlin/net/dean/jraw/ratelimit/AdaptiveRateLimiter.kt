@@ -0,0 +1,152 @@
+package net.dean.jraw.ratelimit
+
+import java.util.concurrent.TimeUnit
+
+/**
+ * A RateLimiter that uses the rate limit reddit reports in the `X-Ratelimit-*` headers instead of a fixed guess.
+ *
+ * Permits are handed out by spreading the remaining requests evenly over the rest of the current window. For example,
+ * if reddit says 300 more requests can be sent in the next 100 seconds, a permit is granted every third of a second.
+ * Up to [burst] permits may be acquired at once after a period of inactivity.
+ *
+ * Until the first response is received (and whenever the reported window has elapsed without a new report), this
+ * class assumes a fresh window of [defaultLimit] requests per [defaultWindow] seconds, which is reddit's documented
+ * limit for OAuth clients.
+ *
+ * To use this class:
+ *
+ * ```kotlin
+ * reddit.rateLimiter = AdaptiveRateLimiter()
+ * ```
+ */
+class AdaptiveRateLimiter internal constructor(
+    /** How many permits can be acquired back-to-back after a period of inactivity */
+    val burst: Long,
+    /** How many requests to assume can be sent per [defaultWindow] when reddit hasn't said otherwise */
+    val defaultLimit: Long,
+    /** How many seconds a rate limit window is assumed to last when reddit hasn't said otherwise */
+    val defaultWindow: Long,
+    private val timeAdapter: TimeAdapter
+) : AbstractRateLimiter(), ResponseAwareRateLimiter {
+    @JvmOverloads constructor(
+        burst: Long = DEFAULT_BURST,
+        defaultLimit: Long = DEFAULT_LIMIT,
+        defaultWindow: Long = DEFAULT_WINDOW_SECONDS
+    ) : this(burst, defaultLimit, defaultWindow, SystemTimeAdapter())
+
+    private val lock = Any()
+
+    /** How many permits are left in the current window */
+    private var remaining: Double
+
+    /** When the current window ends */
+    private var windowEnd: Long
+
+    /** The time at which the pacing schedule would grant the next permit if there were no bursting */
+    private var nextPermitTime: Long
+
+    init {
+        if (burst <= 0) throw IllegalArgumentException("burst must be above 0")
+        if (defaultLimit <= 0) throw IllegalArgumentException("defaultLimit must be above 0")
+        if (defaultWindow <= 0) throw IllegalArgumentException("defaultWindow must be above 0")
+
+        val now = timeAdapter.nanoTime()
+        remaining = defaultLimit.toDouble()
+        windowEnd = now + TimeUnit.SECONDS.toNanos(defaultWindow)
+        nextPermitTime = now
+    }
+
+    override val threadSafeTryAcquire = true
+
+    override fun tryAcquire(permits: Long): Boolean = synchronized(lock) {
+        if (permits <= 0) throw IllegalArgumentException("permits must be above 0")
+        if (permits > burst) throw IllegalArgumentException("permits must be below burst ($burst)")
+
+        val now = timeAdapter.nanoTime()
+        startNewWindowIfNecessary(now)
+
+        // Nothing left until the window resets
+        if (remaining < permits) return false
+
+        val interval = interval(now)
+
+        // Allow acquiring up to [burst] permits ahead of the schedule
+        if (now < nextPermitTime - (burst - 1) * interval) return false
+
+        nextPermitTime = Math.max(nextPermitTime, now) + permits * interval
+        remaining -= permits
+        return true
+    }
+
+    override fun refill(permits: Long) {
+        synchronized(lock) {
+            remaining += Math.max(0, permits)
+        }
+        if (permits > 0) permitsAvailable()
+    }
+
+    override fun update(status: RateLimitStatus) {
+        synchronized(lock) {
+            val now = timeAdapter.nanoTime()
+            val reportedEnd = now + TimeUnit.SECONDS.toNanos(Math.max(0, status.resetSeconds))
+
+            if (now >= windowEnd || reportedEnd - windowEnd > WINDOW_TOLERANCE) {
+                // reddit has started a new window
+                remaining = status.remaining
+                windowEnd = reportedEnd
+                // Don't let the old schedule hold back the new window
+                nextPermitTime = Math.min(nextPermitTime, now)
+            } else {
+                // Responses can arrive out of order when requests are sent concurrently. reddit's count doesn't
+                // include requests that are still in flight, so never let it raise our own count.
+                remaining = Math.min(remaining, status.remaining)
+                windowEnd = Math.min(windowEnd, reportedEnd)
+            }
+        }
+
+        // The schedule may have changed, let the waiting thread figure out how long it has to wait now
+        permitsAvailable()
+    }
+
+    override fun nanosUntilNextPermit(permits: Long): Long = synchronized(lock) {
+        val now = timeAdapter.nanoTime()
+        startNewWindowIfNecessary(now)
+
+        if (remaining < permits) return windowEnd - now
+        return Math.max(0, nextPermitTime - (burst - 1) * interval(now) - now)
+    }
+
+    /** How many permits are left in the current window, according to the latest information */
+    val remainingPermits: Double
+        get() = synchronized(lock) {
+            startNewWindowIfNecessary(timeAdapter.nanoTime())
+            remaining
+        }
+
+    private fun startNewWindowIfNecessary(now: Long) {
+        if (now < windowEnd) return
+
+        // Haven't heard anything about the new window yet, assume the defaults
+        remaining = defaultLimit.toDouble()
+        windowEnd = now + TimeUnit.SECONDS.toNanos(defaultWindow)
+    }
+
+    /** Nanoseconds between permits so that the remaining budget is spread evenly over the rest of the window */
+    private fun interval(now: Long): Long {
+        if (remaining < 1) return windowEnd - now
+        return ((windowEnd - now) / remaining).toLong()
+    }
+
+    /** */
+    companion object {
+        /** Allow sending up to 5 requests at once, just like [LeakyBucketRateLimiter] does by default */
+        const val DEFAULT_BURST = 5L
+
+        /** reddit allows 600 requests per 10 minutes for OAuth clients */
+        const val DEFAULT_LIMIT = 600L
+        const val DEFAULT_WINDOW_SECONDS = 600L
+
+        /** How far the reported reset time can move forward before we consider it a new window */
+        private val WINDOW_TOLERANCE = TimeUnit.SECONDS.toNanos(1)
+    }
+}
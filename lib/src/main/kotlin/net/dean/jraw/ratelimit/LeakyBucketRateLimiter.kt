@@ -45,7 +45,7 @@ class LeakyBucketRateLimiter(
         if (permits > capacity) throw IllegalArgumentException("permits must be below capacity ($capacity)")
 
         // Get caught up on how many permits we actually have
-        refill(refillStrategy.refill())
+        addPermits(refillStrategy.refill())
 
         if (permits <= size) {
             size -= permits
@@ -56,8 +56,16 @@ class LeakyBucketRateLimiter(
     }
 
     override fun refill(permits: Long) {
+        if (addPermits(permits) > 0) permitsAvailable()
+    }
+
+    /** Adds up to [capacity] permits, returning how many were actually considered */
+    private fun addPermits(permits: Long): Long {
         val newPermits = Math.min(capacity, Math.max(0, permits))
         size = Math.max(0, Math.min(size + newPermits, capacity))
+        return newPermits
     }
+
+    override fun nanosUntilNextPermit(permits: Long) = refillStrategy.timeUntilNextRefill(TimeUnit.NANOSECONDS)
 }
 
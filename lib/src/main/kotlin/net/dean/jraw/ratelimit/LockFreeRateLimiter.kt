@@ -0,0 +1,96 @@
+package net.dean.jraw.ratelimit
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A thread-safe token bucket that never blocks or locks when acquiring permits.
+ *
+ * Instead of storing the amount of permits and the time of the last refill separately, this class uses the
+ * [generic cell rate algorithm](https://en.wikipedia.org/wiki/Generic_cell_rate_algorithm), which packs both into a
+ * single timestamp: the "theoretical arrival time" (TAT) at which the bucket would be full again. Every permit pushes
+ * the TAT forward by one [interval][intervalNanos], and a permit can only be acquired if doing so doesn't push the TAT
+ * more than [capacity] intervals into the future. Since the entire state is one `long`, it can be updated with a single
+ * compare-and-set, so concurrent callers can never spend more than [capacity] permits at once.
+ *
+ * Like [LeakyBucketRateLimiter], an instance starts with zero permits.
+ */
+class LockFreeRateLimiter internal constructor(
+    /** The maximum amount of permits that can be acquired back-to-back */
+    val capacity: Long,
+    permitsPerPeriod: Long,
+    unit: TimeUnit,
+    private val timeAdapter: TimeAdapter
+) : AbstractRateLimiter() {
+    /**
+     * @param capacity The maximum amount of permits that can be acquired back-to-back
+     * @param permitsPerPeriod How many permits are issued every time one [unit] goes by
+     */
+    constructor(capacity: Long, permitsPerPeriod: Long, unit: TimeUnit) :
+        this(capacity, permitsPerPeriod, unit, SystemTimeAdapter())
+
+    /** How many nanoseconds it takes for one permit to be issued */
+    val intervalNanos: Long
+
+    /** How far into the future the TAT is allowed to be */
+    private val tolerance: Long
+
+    /** The theoretical arrival time */
+    private val tat: AtomicLong
+
+    init {
+        if (capacity <= 0) throw IllegalArgumentException("expecting a permit capacity > 0")
+        if (permitsPerPeriod <= 0) throw IllegalArgumentException("expecting permitsPerPeriod > 0")
+
+        intervalNanos = Math.max(1, unit.toNanos(1) / permitsPerPeriod)
+        tolerance = capacity * intervalNanos
+
+        // Start out with an empty bucket
+        tat = AtomicLong(timeAdapter.nanoTime() + tolerance)
+    }
+
+    override val threadSafeTryAcquire = true
+
+    override fun tryAcquire(permits: Long): Boolean {
+        if (permits <= 0) throw IllegalArgumentException("permits must be above 0")
+        if (permits > capacity) throw IllegalArgumentException("permits must be below capacity ($capacity)")
+
+        while (true) {
+            val current = tat.get()
+            val now = timeAdapter.nanoTime()
+            val next = Math.max(current, now) + permits * intervalNanos
+
+            if (next - now > tolerance) return false
+            if (tat.compareAndSet(current, next)) return true
+        }
+    }
+
+    override fun refill(permits: Long) {
+        if (permits <= 0) return
+
+        while (true) {
+            val current = tat.get()
+            val now = timeAdapter.nanoTime()
+
+            // A TAT in the past means the bucket is already full
+            if (current <= now) return
+
+            val next = Math.max(now, current - Math.min(permits, capacity) * intervalNanos)
+            if (tat.compareAndSet(current, next)) break
+        }
+
+        permitsAvailable()
+    }
+
+    /** How many permits could be acquired right now */
+    val availablePermits: Long
+        get() {
+            val now = timeAdapter.nanoTime()
+            return (tolerance - (Math.max(tat.get(), now) - now)) / intervalNanos
+        }
+
+    override fun nanosUntilNextPermit(permits: Long): Long {
+        val now = timeAdapter.nanoTime()
+        return Math.max(0, Math.max(tat.get(), now) + permits * intervalNanos - tolerance - now)
+    }
+}
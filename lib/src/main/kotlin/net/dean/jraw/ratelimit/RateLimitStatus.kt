@@ -0,0 +1,30 @@
+package net.dean.jraw.ratelimit
+
+/**
+ * A snapshot of the rate limit reddit reports in the `X-Ratelimit-*` headers of every response.
+ *
+ * @property remaining How many more requests can be sent before [resetSeconds] elapses. reddit reports this value as a
+ * decimal.
+ * @property used How many requests have been sent in the current window
+ * @property resetSeconds How many seconds until the current window ends and [remaining] is reset
+ */
+data class RateLimitStatus(val remaining: Double, val used: Long, val resetSeconds: Long) {
+    /** */
+    companion object {
+        const val HEADER_REMAINING = "X-Ratelimit-Remaining"
+        const val HEADER_USED = "X-Ratelimit-Used"
+        const val HEADER_RESET = "X-Ratelimit-Reset"
+
+        /**
+         * Creates a RateLimitStatus from the values of the `X-Ratelimit-*` headers. Returns null if any of them are
+         * missing or malformed.
+         */
+        @JvmStatic fun parse(remaining: String?, used: String?, reset: String?): RateLimitStatus? {
+            return RateLimitStatus(
+                remaining = remaining?.trim()?.toDoubleOrNull() ?: return null,
+                used = used?.trim()?.toLongOrNull() ?: return null,
+                resetSeconds = reset?.trim()?.toLongOrNull() ?: return null
+            )
+        }
+    }
+}
@@ -15,7 +15,8 @@ package net.dean.jraw.ratelimit
 interface RateLimiter {
 
     /**
-     * Acquires a permit. If no permits are available, this method blocks until one is.
+     * Acquires a permit. If no permits are available, this method blocks until one is. Interrupting the waiting thread
+     * doesn't stop it from waiting, use [AbstractRateLimiter.tryAcquire] with a timeout for that.
      */
     fun acquire(permits: Long = 1)
 
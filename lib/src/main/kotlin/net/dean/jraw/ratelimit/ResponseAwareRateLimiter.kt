@@ -0,0 +1,12 @@
+package net.dean.jraw.ratelimit
+
+/**
+ * A RateLimiter that adjusts itself based on the rate limit reddit reports in its responses. RedditClient calls
+ * [update] after every response that includes the `X-Ratelimit-*` headers.
+ *
+ * @see AdaptiveRateLimiter
+ */
+interface ResponseAwareRateLimiter : RateLimiter {
+    /** Called with the rate limit reported by the most recently received response */
+    fun update(status: RateLimitStatus)
+}
@@ -0,0 +1,172 @@
+package net.dean.jraw.ratelimit
+
+import java.io.Closeable
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * A token bucket whose state lives in a small memory-mapped file, so that every process on the same host using the
+ * same file draws permits from one shared budget. This is useful when several JVMs send requests on behalf of the same
+ * OAuth app, since reddit's rate limit applies to all of them together.
+ *
+ * Like [LockFreeRateLimiter], the bucket is stored as a single "theoretical arrival time," except that it's based on
+ * the wall clock instead of [System.nanoTime] so that it means the same thing to every process. Updates are guarded by
+ * an exclusive [java.nio.channels.FileLock]. Because the state is kept in the file, it also survives restarts: a
+ * process that was just started can't burst past the rate limit that was already used up before it started.
+ *
+ * All processes sharing a file should use the same [capacity] and rate. Make sure to [close] this instance when it's
+ * no longer needed.
+ *
+ * ```kotlin
+ * reddit.rateLimiter = SharedFileRateLimiter(File("/tmp/my-app.ratelimit"), 5, 1, TimeUnit.SECONDS)
+ * ```
+ */
+class SharedFileRateLimiter internal constructor(
+    /** The file that holds the shared state. Created if it doesn't already exist. */
+    val file: File,
+    /** The maximum amount of permits that can be acquired back-to-back */
+    val capacity: Long,
+    permitsPerPeriod: Long,
+    unit: TimeUnit,
+    private val timeAdapter: TimeAdapter
+) : AbstractRateLimiter(), Closeable {
+    /**
+     * @param file The file that holds the shared state. Created if it doesn't already exist.
+     * @param capacity The maximum amount of permits that can be acquired back-to-back
+     * @param permitsPerPeriod How many permits are issued every time one [unit] goes by
+     */
+    constructor(file: File, capacity: Long, permitsPerPeriod: Long, unit: TimeUnit) :
+        this(file, capacity, permitsPerPeriod, unit, WallClockTimeAdapter)
+
+    /** How many nanoseconds it takes for one permit to be issued */
+    val intervalNanos: Long
+
+    /** How far into the future the TAT is allowed to be */
+    private val tolerance: Long
+
+    private val channel: FileChannel
+    private val buffer: MappedByteBuffer
+
+    /** FileLocks are held by the entire JVM, so instances in the same JVM have to take turns on their own */
+    private val jvmLock: Any
+
+    init {
+        if (capacity <= 0) throw IllegalArgumentException("expecting a permit capacity > 0")
+        if (permitsPerPeriod <= 0) throw IllegalArgumentException("expecting permitsPerPeriod > 0")
+
+        intervalNanos = Math.max(1, unit.toNanos(1) / permitsPerPeriod)
+        tolerance = capacity * intervalNanos
+
+        channel = RandomAccessFile(file, "rw").channel
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE)
+            jvmLock = jvmLocks.getOrPut(file.canonicalPath) { Any() }
+
+            locked<Unit> {
+                if (buffer.getInt(OFFSET_MAGIC) != MAGIC) {
+                    // Brand new file, start out with an empty bucket
+                    buffer.putInt(OFFSET_MAGIC, MAGIC)
+                    buffer.putInt(OFFSET_VERSION, VERSION)
+                    buffer.putLong(OFFSET_TAT, timeAdapter.nanoTime() + tolerance)
+                } else if (buffer.getInt(OFFSET_VERSION) != VERSION) {
+                    throw IllegalStateException("Unsupported rate limit file version: ${buffer.getInt(OFFSET_VERSION)}")
+                }
+            }
+        } catch (e: Throwable) {
+            // Nobody else can close the file if the constructor fails
+            try {
+                channel.close()
+            } catch (suppressed: Throwable) {
+                e.addSuppressed(suppressed)
+            }
+            throw e
+        }
+    }
+
+    override val threadSafeTryAcquire = true
+
+    override fun tryAcquire(permits: Long): Boolean {
+        if (permits <= 0) throw IllegalArgumentException("permits must be above 0")
+        if (permits > capacity) throw IllegalArgumentException("permits must be below capacity ($capacity)")
+
+        return locked {
+            val now = timeAdapter.nanoTime()
+            val next = Math.max(readTat(now), now) + permits * intervalNanos
+
+            if (next - now > tolerance) {
+                false
+            } else {
+                buffer.putLong(OFFSET_TAT, next)
+                true
+            }
+        }
+    }
+
+    override fun refill(permits: Long) {
+        if (permits <= 0) return
+
+        locked<Unit> {
+            val now = timeAdapter.nanoTime()
+            val current = readTat(now)
+            if (current > now)
+                buffer.putLong(OFFSET_TAT, Math.max(now, current - Math.min(permits, capacity) * intervalNanos))
+        }
+
+        permitsAvailable()
+    }
+
+    /** How many permits could be acquired right now */
+    val availablePermits: Long
+        get() = locked {
+            val now = timeAdapter.nanoTime()
+            (tolerance - (Math.max(readTat(now), now) - now)) / intervalNanos
+        }
+
+    override fun nanosUntilNextPermit(permits: Long): Long = locked {
+        val now = timeAdapter.nanoTime()
+        Math.max(0, Math.max(readTat(now), now) + permits * intervalNanos - tolerance - now)
+    }
+
+    /** Releases the file. This instance can't be used afterwards. */
+    override fun close() {
+        channel.close()
+    }
+
+    /**
+     * Reads the TAT, making sure it's not further in the future than it's allowed to be. That could happen if the
+     * system clock was set back or if another process uses a different capacity or rate.
+     */
+    private fun readTat(now: Long) = Math.min(buffer.getLong(OFFSET_TAT), now + tolerance)
+
+    private inline fun <T> locked(block: () -> T): T = synchronized(jvmLock) {
+        val fileLock = channel.lock(0, FILE_SIZE, false)
+        try {
+            block()
+        } finally {
+            fileLock.release()
+        }
+    }
+
+    /** Nanoseconds since the epoch. Unlike [System.nanoTime], this is the same for every process. */
+    private object WallClockTimeAdapter : TimeAdapter {
+        override fun nanoTime() = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis())
+    }
+
+    /** */
+    companion object {
+        /** "JRAW" */
+        private const val MAGIC = 0x4A524157
+        private const val VERSION = 1
+
+        private const val OFFSET_MAGIC = 0
+        private const val OFFSET_VERSION = 4
+        private const val OFFSET_TAT = 8
+        private const val FILE_SIZE = 16L
+
+        private val jvmLocks = ConcurrentHashMap<String, Any>()
+    }
+}
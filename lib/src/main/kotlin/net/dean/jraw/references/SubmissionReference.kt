@@ -4,9 +4,15 @@ import net.dean.jraw.Endpoint
 import net.dean.jraw.EndpointImplementation
 import net.dean.jraw.RedditClient
 import net.dean.jraw.filterValuesNotNull
+import net.dean.jraw.http.HttpResponse
+import net.dean.jraw.models.CommentSort
 import net.dean.jraw.models.KindConstants
+import net.dean.jraw.models.MoreChildren
 import net.dean.jraw.models.Submission
-import net.dean.jraw.models.internal.SubmissionData
+import net.dean.jraw.tree.CommentListener
+import net.dean.jraw.tree.CommentNode
+import net.dean.jraw.tree.CommentStreamer
+import net.dean.jraw.tree.CommentTreeParser
 import net.dean.jraw.tree.CommentTreeSettings
 import net.dean.jraw.tree.RootCommentNode
 
@@ -32,6 +38,48 @@ class SubmissionReference internal constructor(reddit: RedditClient, id: String)
      */
     @EndpointImplementation(Endpoint.GET_COMMENTS_ARTICLE)
     fun comments(spec: CommentsRequest): RootCommentNode {
+        val settings = CommentTreeSettings(
+            submissionId = id,
+            sort = spec.sort
+        )
+
+        // Build the tree while reading the response instead of deserializing a SubmissionData first
+        return requestComments(spec).deserializeWith(CommentTreeParser.adapter(settings))
+    }
+
+    /**
+     * Fetches every comment in this submission's thread and passes each one to the [listener] as soon as it's been
+     * received, expanding [MoreChildren] the same way [CommentNode.loadFully] does.
+     *
+     * Unlike [comments], this doesn't create a comment tree, so comments are never kept around after the listener has
+     * been called. This makes it possible to go through threads with tens of thousands of comments without running
+     * out of memory. Only the IDs of the comments still waiting to be requested are kept in memory, along with the
+     * depths of their parents. The depths of the comments that were loaded aren't kept once nothing can be a reply to
+     * them anymore.
+     *
+     * @param sort How the comments should be sorted
+     * @param depthLimit The maximum depth to look into. A value of [-1] will disable the limit.
+     * @param requestLimit The maximum amount of requests to the morechildren endpoint (or thread continuations) to
+     * send. A value of [-1] will disable the limit.
+     * @return The submission
+     */
+    @JvmOverloads
+    @EndpointImplementation(Endpoint.GET_COMMENTS_ARTICLE, Endpoint.GET_MORECHILDREN)
+    fun streamComments(
+        listener: CommentListener,
+        sort: CommentSort = CommentsRequest.DEFAULT_COMMENT_SORT,
+        depthLimit: Int = CommentNode.NO_LIMIT,
+        requestLimit: Int = CommentNode.NO_LIMIT
+    ): Submission {
+        if (depthLimit < CommentNode.NO_LIMIT || requestLimit < CommentNode.NO_LIMIT)
+            throw IllegalArgumentException("Expecting a number greater than or equal to -1, got " + if (requestLimit < CommentNode.NO_LIMIT) requestLimit else depthLimit)
+
+        val settings = CommentTreeSettings(submissionId = id, sort = sort)
+        return CommentStreamer(reddit, settings, depthLimit, requestLimit, listener).run()
+    }
+
+    /** Sends the request for [comments] without reading the response */
+    internal fun requestComments(spec: CommentsRequest): HttpResponse {
         val query = mapOf(
             "comment" to spec.focus,
             "context" to spec.context?.toString(),
@@ -42,16 +90,10 @@ class SubmissionReference internal constructor(reddit: RedditClient, id: String)
         )
             .filterValuesNotNull()
 
-        val settings = CommentTreeSettings(
-            submissionId = id,
-            sort = spec.sort
-        )
-
-        val data: SubmissionData = reddit.request {
+        return reddit.request {
             it.endpoint(Endpoint.GET_COMMENTS_ARTICLE, null, id)
                 .query(query)
-        }.deserialize()
-        return RootCommentNode(data.submissions[0], data.comments, settings)
+        }
     }
 
     /**
@@ -1,14 +1,15 @@
 package net.dean.jraw.tree
 
+import com.squareup.moshi.JsonReader
 import net.dean.jraw.Endpoint
 import net.dean.jraw.JrawUtils
 import net.dean.jraw.RedditClient
 import net.dean.jraw.databind.Enveloped
 import net.dean.jraw.http.LogAdapter
 import net.dean.jraw.models.*
-import net.dean.jraw.models.internal.GenericJsonResponse
 import net.dean.jraw.references.CommentsRequest
 import net.dean.jraw.tree.CommentNode.Companion.NO_LIMIT
+import okio.Buffer
 
 /**
  * This class is the base implementation for all CommentNodes
@@ -16,15 +17,45 @@ import net.dean.jraw.tree.CommentNode.Companion.NO_LIMIT
 abstract class AbstractCommentNode<out T : PublicContribution<*>> protected constructor(
     override val depth: Int,
     override var moreChildren: MoreChildren?,
-    override val subject: T,
+    subject: T,
     override val settings: CommentTreeSettings
 ) : CommentNode<T> {
+    /** Backing field for [subject], which [updateSubject] can replace */
+    private var currentSubject: @UnsafeVariance T = subject
+
+    override val subject: T
+        get() = currentSubject
+
     override val replies: MutableList<CommentNode<Comment>> = mutableListOf()
 
+    /** The value of [totalSize] */
+    internal var descendants = 0
+        private set
+
+    /** Backing field for [index]. Resolved the first time it's needed, since [parent] isn't available until then. */
+    private var treeIndex: MutableMap<String, AbstractCommentNode<*>>? = null
+
     /**
-     * Initializes [moreChildren] and [replies].
+     * Maps the fullname of every node in this tree to that node. This map is shared by all nodes in the tree and is
+     * updated whenever JRAW adds a node to the tree. The root of the tree creates it, every other node uses its parent's.
+     */
+    internal val index: MutableMap<String, AbstractCommentNode<*>>
+        get() {
+            var index = treeIndex
+            if (index == null) {
+                val parentNode = if (this is ReplyCommentNode) parent as? AbstractCommentNode<*> else null
+                index = parentNode?.index ?: hashMapOf<String, AbstractCommentNode<*>>(subject.fullName to this)
+                treeIndex = index
+            }
+            return index
+        }
+
+    /**
+     * Initializes [moreChildren] and [replies] and adds this node to the [index].
      */
     protected fun initReplies(replies: List<NestedIdentifiable>) {
+        index[subject.fullName] = this
+
         val (comments, allMoreChildren) = replies.partition { it is Comment }
         if (allMoreChildren.size > 1)
             throw IllegalStateException("More than 1 MoreChildren object found")
@@ -32,7 +63,7 @@ abstract class AbstractCommentNode<out T : PublicContribution<*>> protected cons
         this.moreChildren = if (allMoreChildren.isNotEmpty()) allMoreChildren[0] as MoreChildren else null
 
         for (reply in comments) {
-            this.replies.add(ReplyCommentNode(
+            initReply(ReplyCommentNode(
                 depth = this.depth + 1,
                 comment = reply as Comment,
                 settings = settings,
@@ -41,15 +72,49 @@ abstract class AbstractCommentNode<out T : PublicContribution<*>> protected cons
         }
     }
 
+    /**
+     * Initializes [moreChildren] and [replies] from replies read by [CommentTreeParser] and adds this node to the
+     * [index]. Replies that were already created (from the subject's own replies) are kept, so only the rest of them
+     * is added.
+     */
+    internal fun initReplies(replies: ParsedReplies) {
+        index[subject.fullName] = this
+        this.moreChildren = replies.moreChildren
+
+        for (reply in replies.comments.subList(this.replies.size, replies.comments.size)) {
+            initReply(ReplyCommentNode(
+                depth = this.depth + 1,
+                parsed = reply,
+                settings = settings,
+                parent = this
+            ))
+        }
+    }
+
+    /**
+     * Adds a reply while this node is being created. The parent of a node that's being created hasn't counted it yet,
+     * so unlike [addReply], only this node's size has to change.
+     */
+    private fun initReply(node: ReplyCommentNode) {
+        replies.add(node)
+        descendants += node.descendants + 1
+    }
+
+    /** Adds [delta] to the size of this node and all of its parents */
+    private fun updateSize(delta: Int) {
+        var node: AbstractCommentNode<*>? = this
+        while (node != null) {
+            node.descendants += delta
+            node = if (node is ReplyCommentNode) node.parent as? AbstractCommentNode<*> else null
+        }
+    }
+
     override fun hasMoreChildren(): Boolean = moreChildren != null
 
     /** */
     override fun iterator(): Iterator<CommentNode<Comment>> = replies.iterator()
 
-    override fun totalSize(): Int {
-        // walkTree() goes through this node and all child nodes, but we only care about child nodes
-        return walkTree().count() - 1
-    }
+    override fun totalSize(): Int = descendants
 
     override fun visualize(out: LogAdapter) {
         val relativeRootDepth = depth
@@ -100,97 +165,64 @@ abstract class AbstractCommentNode<out T : PublicContribution<*>> protected cons
         if (more.isThreadContinuation)
             return continueThread(reddit)
 
-        // Make sure we are only making one request to this endpoint at a time, as noted by the docs:
-        // "**NOTE**: you may only make one request at a time to this API endpoint. Higher concurrency will result in an
-        // error being returned."
-        return synchronized(moreChildrenLock) {
-            val json: GenericJsonResponse = reddit.request {
-                it.endpoint(Endpoint.GET_MORECHILDREN)
-                    .query(mapOf(
-                        "api_type" to "json",
-                        "children" to more.childrenIds.take(MORE_CHILDREN_LIMIT).joinToString(","),
-                        "link_id" to KindConstants.SUBMISSION + '_' + settings.submissionId,
-                        "sort" to settings.sort.name.toLowerCase()
-                    ))
-            }.deserialize()
-
-            // IDs that weren't included in the request
-            val leftoverIds = more.childrenIds.drop(MORE_CHILDREN_LIMIT)
+        val redditObjects = requestMoreChildren(reddit, more.childrenIds.take(MORE_CHILDREN_LIMIT))
 
-            // The "things" node is an array of either comments or morechildren
-            val things = json.json?.data?.get("things") as? List<*> ?:
-                throw IllegalArgumentException("Unexpected JSON response")
-
-            // Transform every element to either a Comment or a MoreChildren
-            val adapter = JrawUtils.adapter<NestedIdentifiable>(Enveloped::class.java)
-            val redditObjects = things.map { adapter.fromJsonValue(it)!! } as MutableList<NestedIdentifiable>
-
-            // Sometimes the reddit API will send us another MoreChildren object for the same root node. Since we can't
-            // have more than one MoreChildren for a single CommentNode, we have to combine the two
-            val newRootMoreIndex = if (leftoverIds.isEmpty()) {
-                // If we don't have any leftover IDs then there is nothing to do
-                -1
-            } else {
-                // Try to find a MoreChildren that has the same parent as this.moreChildren
-                redditObjects.indexOfFirst {
-                    it is MoreChildren && it.parentFullName == more.parentFullName
-                }
-            }
+        // IDs that weren't included in the request
+        val leftoverIds = more.childrenIds.drop(MORE_CHILDREN_LIMIT)
 
-            // If we found an additional root MoreChildren, replace it with the data we already have
-            if (newRootMoreIndex >= 0) {
-                val newRootMore = redditObjects[newRootMoreIndex] as MoreChildren
-                redditObjects[newRootMoreIndex] = MoreChildren.create(
-                    /*fullName = */newRootMore.fullName,
-                    /*id = */newRootMore.id,
-                    /*parentFullName = */newRootMore.parentFullName,
-                    /*childrenIds = */leftoverIds + newRootMore.childrenIds
-                )
+        // Sometimes the reddit API will send us another MoreChildren object for the same root node. Since we can't
+        // have more than one MoreChildren for a single CommentNode, we have to combine the two
+        val newRootMoreIndex = if (leftoverIds.isEmpty()) {
+            // If we don't have any leftover IDs then there is nothing to do
+            -1
+        } else {
+            // Try to find a MoreChildren that has the same parent as this.moreChildren
+            redditObjects.indexOfFirst {
+                it is MoreChildren && it.parentFullName == more.parentFullName
             }
+        }
 
-            /*return*/ redditObjects
+        // If we found an additional root MoreChildren, replace it with the data we already have
+        if (newRootMoreIndex >= 0) {
+            val newRootMore = redditObjects[newRootMoreIndex] as MoreChildren
+            redditObjects[newRootMoreIndex] = MoreChildren.create(
+                /*fullName = */newRootMore.fullName,
+                /*id = */newRootMore.id,
+                /*parentFullName = */newRootMore.parentFullName,
+                /*childrenIds = */leftoverIds + newRootMore.childrenIds
+            )
         }
+
+        return redditObjects
     }
 
+    /**
+     * Fetches the Comments and MoreChildren for up to [MORE_CHILDREN_LIMIT] comment IDs. The IDs don't have to belong
+     * to the same MoreChildren, as long as they're all part of this tree's submission. The objects that are returned
+     * are listed as if they had been visited in pre-order traversal.
+     */
+    internal fun requestMoreChildren(reddit: RedditClient, ids: List<String>): MutableList<NestedIdentifiable> =
+        requestMoreChildren(reddit, settings, ids)
+
     /**
      * Attaches a list of Comments and MoreChildren to a given root node. Returns all new direct children.
      */
     private fun attach(children: List<NestedIdentifiable>, root: AbstractCommentNode<T> = this): List<ReplyCommentNode> {
         val newDirectChildren: MutableList<ReplyCommentNode> = ArrayList()
 
-        var currentRoot: AbstractCommentNode<*> = root
-
-        // Children are listed in pre-order traversal
+        // Children are listed in pre-order traversal, so their parents have already been added to the tree
         for (child in children) {
-            while (child.parentFullName != currentRoot.subject.fullName) {
-                currentRoot = currentRoot.parent as AbstractCommentNode<*>
-
-                if (currentRoot.depth < root.depth)
-                    throw IllegalStateException("Failed to properly create tree")
-            }
+            val parent = root.index[child.parentFullName]
+            if (parent == null || parent.depth < root.depth)
+                throw IllegalStateException("Failed to properly create tree")
 
             when (child) {
                 is Comment -> {
-                    val newNode = ReplyCommentNode(
-                        comment = child,
-                        depth = currentRoot.depth + 1,
-                        parent = currentRoot,
-                        settings = this.settings
-                    )
-
-                    // Sometimes same nodes are added more than once. Instead of not processing the duplicates we remove
-                    // the old ones in order to not break the traversal algorithm
-                    currentRoot.replies.removeIf { it.subject == newNode.subject }
-
-                    currentRoot.replies.add(newNode)
-
-                    if (currentRoot.subject.fullName == root.subject.fullName)
+                    val newNode = parent.addReply(child)
+                    if (parent === root)
                         newDirectChildren.add(newNode)
-
-                    // Assume the next comment is the child of the new node
-                    currentRoot = newNode
                 }
-                is MoreChildren -> currentRoot.moreChildren = child
+                is MoreChildren -> parent.moreChildren = child
                 else -> throw IllegalArgumentException("Expected Comment or MoreChildren, got " + child.javaClass)
             }
         }
@@ -198,6 +230,69 @@ abstract class AbstractCommentNode<out T : PublicContribution<*>> protected cons
         return newDirectChildren
     }
 
+    /**
+     * Creates a node for the given comment and adds it to the end of this node's replies. Returns the new node.
+     */
+    internal fun addReply(comment: Comment): ReplyCommentNode = addReply(comment.fullName) {
+        ReplyCommentNode(
+            depth = this.depth + 1,
+            comment = comment,
+            settings = settings,
+            parent = this
+        )
+    }
+
+    /**
+     * Creates a node for a comment read by [CommentTreeParser] and adds it to the end of this node's replies. Returns
+     * the new node.
+     */
+    internal fun addReply(parsed: ParsedComment): ReplyCommentNode = addReply(parsed.comment.fullName) {
+        ReplyCommentNode(
+            depth = this.depth + 1,
+            parsed = parsed,
+            settings = settings,
+            parent = this
+        )
+    }
+
+    private inline fun addReply(fullName: String, createNode: () -> ReplyCommentNode): ReplyCommentNode {
+        // Sometimes same nodes are added more than once. Instead of not processing the duplicates we remove the old
+        // ones in order to not break the traversal algorithm. The old node is found with a single lookup, even if it
+        // has a different parent.
+        val old = index[fullName] as? ReplyCommentNode
+        if (old != null) {
+            var node: CommentNode<*> = this
+            while (node is ReplyCommentNode) {
+                if (node === old) throw IllegalStateException("Can't add $fullName as a reply to one of its own replies")
+                node = node.parent
+            }
+            (old.parent as AbstractCommentNode<*>).removeReply(old)
+        }
+
+        val newNode = createNode()
+        replies.add(newNode)
+        updateSize(newNode.descendants + 1)
+        return newNode
+    }
+
+    /**
+     * Removes one of this node's replies, along with all of its own replies. The reply is found by going through this
+     * node's replies, so this takes longer the more replies come before it.
+     */
+    private fun removeReply(reply: ReplyCommentNode) {
+        replies.removeAt(replies.indexOfFirst { it === reply })
+        updateSize(-(reply.descendants + 1))
+        for (node in reply.walkTree())
+            index.remove(node.subject.fullName)
+    }
+
+    /** Replaces the [subject] with a newer version of the same submission or comment */
+    internal fun updateSubject(subject: @UnsafeVariance T) {
+        if (subject.fullName != this.subject.fullName)
+            throw IllegalArgumentException("Expected ${this.subject.fullName}, got ${subject.fullName}")
+        this.currentSubject = subject
+    }
+
     /**
      * Requests more comments from a MoreChildren that is a thread continuation.
      *
@@ -221,28 +316,11 @@ abstract class AbstractCommentNode<out T : PublicContribution<*>> protected cons
             .toList()
     }
 
-    override fun loadFully(reddit: RedditClient, depthLimit: Int, requestLimit: Int) {
-        var requests = 0
+    override fun loadFully(reddit: RedditClient, depthLimit: Int, requestLimit: Int, policy: ExpansionPolicy) {
         if (depthLimit < NO_LIMIT || requestLimit < NO_LIMIT)
             throw IllegalArgumentException("Expecting a number greater than or equal to -1, got " + if (requestLimit < NO_LIMIT) requestLimit else depthLimit)
-        // Load this node's comments first
-        while (hasMoreChildren()) {
-            replaceMore(reddit)
-            if (++requests > requestLimit && depthLimit != NO_LIMIT)
-                return
-        }
 
-        // Load the children's comments next
-        for (node in walkTree(TreeTraversalOrder.BREADTH_FIRST)) {
-            // Travel breadth first so we can accurately compare depths
-            if (depthLimit != NO_LIMIT && node.depth > depthLimit)
-                return
-            while (node.hasMoreChildren()) {
-                node.replaceMore(reddit)
-                if (++requests > requestLimit && depthLimit != NO_LIMIT)
-                    return
-            }
-        }
+        MoreChildrenPlanner(this, reddit, depthLimit, requestLimit, policy).run()
     }
 
     override fun toString(): String {
@@ -253,6 +331,75 @@ abstract class AbstractCommentNode<out T : PublicContribution<*>> protected cons
     companion object {
         /** The upper limit to how many more comments can be requested at one time. Equal to 100. */
         const val MORE_CHILDREN_LIMIT = 100
-        private val moreChildrenLock = Any()
+
+        /**
+         * Fetches the Comments and MoreChildren for up to [MORE_CHILDREN_LIMIT] comment IDs of the submission described
+         * by [settings]. The objects that are returned are listed as if they had been visited in pre-order traversal.
+         */
+        internal fun requestMoreChildren(
+            reddit: RedditClient,
+            settings: CommentTreeSettings,
+            ids: List<String>
+        ): MutableList<NestedIdentifiable> {
+            // Make sure we are only making one request to this endpoint at a time, as noted by the docs:
+            // "**NOTE**: you may only make one request at a time to this API endpoint. Higher concurrency will result in
+            // an error being returned." This limit applies to each client, so other clients don't have to wait for us.
+            // Only the request itself is made while holding the lock. The response is parsed once it's been released.
+            val body = synchronized(reddit.moreChildrenLock) {
+                reddit.request {
+                    it.endpoint(Endpoint.GET_MORECHILDREN)
+                        .query(mapOf(
+                            "api_type" to "json",
+                            "children" to ids.joinToString(","),
+                            "link_id" to KindConstants.SUBMISSION + '_' + settings.submissionId,
+                            "sort" to settings.sort.name.toLowerCase()
+                        ))
+                }.body
+            }
+
+            // The "things" node is an array of either comments or morechildren
+            val reader = JsonReader.of(Buffer().writeUtf8(body))
+            return readProperty(reader, jsonOptions) {
+                readProperty(reader, dataOptions) {
+                    readProperty(reader, thingsOptions) { readThings(reader) }
+                }
+            } ?: throw IllegalArgumentException("Unexpected JSON response")
+        }
+
+        private val jsonOptions = JsonReader.Options.of("json")
+        private val dataOptions = JsonReader.Options.of("data")
+        private val thingsOptions = JsonReader.Options.of("things")
+
+        /**
+         * Reads the value of the property in [name] with [read], skipping every other property of the object the
+         * [reader] is at. Returns null if there is no such property or its value is null.
+         */
+        private inline fun <T> readProperty(reader: JsonReader, name: JsonReader.Options, read: () -> T?): T? {
+            var value: T? = null
+            reader.beginObject()
+            while (reader.hasNext()) {
+                if (reader.selectName(name) == -1) {
+                    reader.nextName()
+                    reader.skipValue()
+                } else if (reader.peek() == JsonReader.Token.NULL) {
+                    reader.skipValue()
+                } else {
+                    value = read()
+                }
+            }
+            reader.endObject()
+            return value
+        }
+
+        /** Reads every Comment and MoreChildren in the "things" array straight into its model */
+        private fun readThings(reader: JsonReader): MutableList<NestedIdentifiable> {
+            val adapter = JrawUtils.adapter<NestedIdentifiable>(Enveloped::class.java)
+            val things = ArrayList<NestedIdentifiable>()
+            reader.beginArray()
+            while (reader.hasNext())
+                things.add(adapter.fromJson(reader)!!)
+            reader.endArray()
+            return things
+        }
     }
 }
@@ -85,6 +85,13 @@ interface CommentNode<out T : PublicContribution<*>> : Iterable<CommentNode<*>>
      */
     fun walkTree(order: TreeTraversalOrder = TreeTraversalOrder.PRE_ORDER): Sequence<CommentNode<PublicContribution<*>>>
 
+    /**
+     * Visits this node and its children in pre-order. The [visitor] can skip the children of any node or stop
+     * altogether, so only the part of the tree that's actually needed has to be visited. Returns false if the visitor
+     * stopped early.
+     */
+    fun visit(visitor: CommentVisitor): Boolean = TreeTraverser.visit(this, visitor)
+
     /** Prints out a brief overview of this CommentNode and its children to stdout */
     fun visualize() = visualize(PrintStreamLogAdapter())
 
@@ -93,7 +100,10 @@ interface CommentNode<out T : PublicContribution<*>> : Iterable<CommentNode<*>>
      */
     fun visualize(out: LogAdapter = PrintStreamLogAdapter())
 
-    /** Returns the amount of direct and indirect children this node has. */
+    /**
+     * Returns the amount of direct and indirect children this node has. This is kept track of as the tree changes, so
+     * it doesn't require walking the tree.
+     */
     fun totalSize(): Int
 
     /**
@@ -111,15 +121,22 @@ interface CommentNode<out T : PublicContribution<*>> : Iterable<CommentNode<*>>
 
     /**
      * Fully expands the comment tree below this node by finding all [MoreChildren] objects belonging to and below
-     * this node and loading them into the tree using [replaceMore]. Be aware that without
-     * setting a depth or request limit this may be a very costly operation, requiring potentially hundreds of requests
-     * to fully satisfy the method call. Note that one request must be sent for every [MoreChildren] found.
+     * this node and loading them into the tree. Be aware that without setting a depth or request limit this may be a
+     * very costly operation, requiring potentially hundreds of requests to fully satisfy the method call. The IDs of
+     * different [MoreChildren] are combined into requests of up to 100 IDs where possible, so trees with lots of small
+     * MoreChildren need much fewer requests than there are MoreChildren.
      *
      * @param depthLimit The maximum depth to look into. A value of [-1] will disable the limit.
-     * @param requestLimit The maximum amount of requests to send. There will be one request for every MoreChildren
-     * object found. A value of [-1] will disable the limit.
+     * @param requestLimit The maximum amount of requests to send. A value of [-1] will disable the limit.
+     */
+    fun loadFully(reddit: RedditClient, depthLimit: Int = NO_LIMIT, requestLimit: Int = NO_LIMIT) =
+        loadFully(reddit, depthLimit, requestLimit, ExpansionPolicy.BREADTH_FIRST)
+
+    /**
+     * Like [loadFully], but lets the [policy] decide which MoreChildren are worth expanding and which ones to expand
+     * first. With a request limit, this makes it possible to only load the most interesting parts of a big thread.
      */
-    fun loadFully(reddit: RedditClient, depthLimit: Int = NO_LIMIT, requestLimit: Int = NO_LIMIT)
+    fun loadFully(reddit: RedditClient, depthLimit: Int, requestLimit: Int, policy: ExpansionPolicy)
 
     /**
     * Fully expands the comment tree below this node. This can be a very expensive call depending on how large the
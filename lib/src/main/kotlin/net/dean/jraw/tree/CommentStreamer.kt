@@ -0,0 +1,191 @@
+package net.dean.jraw.tree
+
+import net.dean.jraw.RedditClient
+import net.dean.jraw.models.Comment
+import net.dean.jraw.models.MoreChildren
+import net.dean.jraw.models.Submission
+import net.dean.jraw.references.CommentsRequest
+import net.dean.jraw.tree.AbstractCommentNode.Companion.MORE_CHILDREN_LIMIT
+import net.dean.jraw.tree.CommentNode.Companion.NO_LIMIT
+import java.util.*
+
+/**
+ * Receives comments as soon as they've been fetched.
+ *
+ * @see net.dean.jraw.references.SubmissionReference.streamComments
+ */
+interface CommentListener {
+    /**
+     * Called once for every comment in the thread. [depth] is where the comment would be in a comment tree, so
+     * top-level comments have a depth of 1. Comments are passed in the order they're received, which is not
+     * necessarily the order they'd be in the tree, but a comment is always passed after its parent.
+     */
+    fun onComment(comment: Comment, depth: Int)
+}
+
+/**
+ * Loads every comment in a thread like [CommentNode.loadFully] does, but without creating a tree. Each comment is given
+ * to a [CommentListener] and then forgotten, so it can be garbage collected as soon as the listener is done with it.
+ *
+ * All that's kept in between requests is the frontier: the [MoreChildren] that have yet to be requested and the depth
+ * of their parents. The IDs of a MoreChildren that don't fit into one request are requested on their own with the next
+ * one, and the comments they point to can be replies to comments that were loaded by the request before. MoreChildren
+ * list their IDs in pre-order, so those can only be the ancestors of the last comment that was received. Their depths
+ * are kept along with the rest of the IDs, and the depths of every other comment are dropped once its request is done.
+ * The Comments themselves are never kept.
+ */
+internal class CommentStreamer(
+    private val reddit: RedditClient,
+    private val settings: CommentTreeSettings,
+    private val depthLimit: Int,
+    private val requestLimit: Int,
+    private val listener: CommentListener
+) {
+    /** MoreChildren that have yet to be requested, in the order they were found */
+    private val frontier: Deque<Pending> = ArrayDeque()
+
+    /**
+     * What's known about the comments that the ones in the current request can be replies to: the parents of the
+     * MoreChildren being requested, the comments received so far and the ancestors passed on by the request before
+     */
+    private var known = HashMap<String, Known>()
+
+    /** How many comments [known] has. Stays below twice [MORE_CHILDREN_LIMIT] plus the depth of the thread. */
+    internal val knownCount: Int
+        get() = known.size
+
+    private var requests = 0
+
+    /** Requests the thread and passes every comment in it to the [listener]. Returns the submission. */
+    fun run(): Submission {
+        val submission = start()
+
+        while (frontier.isNotEmpty() && (requestLimit == NO_LIMIT || requests < requestLimit)) {
+            requests++
+            if (frontier.peek().more.isThreadContinuation)
+                continueThread(frontier.poll())
+            else
+                expand()
+        }
+
+        return submission
+    }
+
+    /**
+     * Requests the thread itself. Done in its own method so that the comments sent with the submission can be
+     * collected before we start expanding the MoreChildren.
+     */
+    private fun start(): Submission {
+        val (submission, replies) = requestThread(focus = null)
+        emit(replies, depth = 1)
+        return submission
+    }
+
+    /**
+     * Requests the comments behind as many MoreChildren as fit into one request. The rest of a MoreChildren that was
+     * split up by an earlier request is requested on its own.
+     */
+    private fun expand() {
+        val ids = ArrayList<String>(MORE_CHILDREN_LIMIT)
+        known = HashMap()
+        var leftover: MoreChildren? = null
+        var leftoverDepth = 0
+
+        do {
+            val pending = frontier.poll()
+            val more = pending.more
+            val space = MORE_CHILDREN_LIMIT - ids.size
+            ids.addAll(more.childrenIds.take(space))
+            known[more.parentFullName] = Known(pending.parentDepth, parentFullName = null)
+            known.putAll(pending.ancestors)
+
+            if (more.childrenIds.size > space) {
+                // Request the rest of them next time
+                leftover = MoreChildren.create(more.fullName, more.id, more.parentFullName, more.childrenIds.drop(space))
+                leftoverDepth = pending.parentDepth
+            }
+        } while (leftover == null && ids.size < MORE_CHILDREN_LIMIT && pending.ancestors.isEmpty() &&
+            frontier.peek()?.let { !it.more.isThreadContinuation && it.ancestors.isEmpty() } == true)
+
+        // Objects are listed in pre-order, so the parent of every object is either one we know (possibly from an earlier
+        // request) or was listed before it
+        var last: String? = null
+        for (child in AbstractCommentNode.requestMoreChildren(reddit, settings, ids)) {
+            val parentDepth = known[child.parentFullName]?.depth ?:
+                throw IllegalStateException("Failed to properly create tree: no parent for ${child.fullName}")
+
+            when (child) {
+                is Comment -> {
+                    listener.onComment(child, parentDepth + 1)
+                    known[child.fullName] = Known(parentDepth + 1, child.parentFullName)
+                    last = child.fullName
+                }
+                is MoreChildren -> add(child, parentDepth)
+                else -> throw IllegalArgumentException("Expected Comment or MoreChildren, got " + child.javaClass)
+            }
+        }
+
+        if (leftover != null)
+            frontier.addFirst(Pending(leftover, leftoverDepth, ancestors(last, leftover.parentFullName)))
+    }
+
+    /**
+     * Returns what's known about [fullName] and its ancestors, up to (but not including) [stopAt]. These are the only
+     * comments that the next IDs of a MoreChildren listed in pre-order can be replies to.
+     */
+    private fun ancestors(fullName: String?, stopAt: String): Map<String, Known> {
+        val ancestors = HashMap<String, Known>()
+        var current = fullName
+        while (current != null && current != stopAt) {
+            val node = known[current] ?: break
+            ancestors[current] = node
+            current = node.parentFullName
+        }
+        return ancestors
+    }
+
+    /** Requests the replies of a comment whose MoreChildren is a thread continuation */
+    private fun continueThread(pending: Pending) {
+        val parentId = pending.more.parentFullName.substringAfter('_')
+        val (_, replies) = requestThread(focus = parentId)
+
+        // When we specify `focus`, the only top-level comment is the focus comment, which we already know about
+        val focus = replies.comments.firstOrNull() ?: return
+        emit(focus.replies, pending.parentDepth + 1)
+    }
+
+    private fun requestThread(focus: String?): Pair<Submission, ParsedReplies> =
+        reddit.submission(settings.submissionId)
+            .requestComments(CommentsRequest(focus = focus, sort = settings.sort))
+            .deserializeWith(CommentTreeParser.repliesAdapter())
+
+    /** Passes comments that were sent with the submission to the [listener] */
+    private fun emit(replies: ParsedReplies, depth: Int) {
+        for (parsed in replies.comments) {
+            listener.onComment(parsed.comment, depth)
+            emit(parsed.replies, depth + 1)
+        }
+
+        val more = replies.moreChildren
+        if (more != null) add(more, depth - 1)
+    }
+
+    /** Adds a MoreChildren to the frontier if it's within the depth limit */
+    private fun add(more: MoreChildren, parentDepth: Int) {
+        if (parentDepth == 0 || depthLimit == NO_LIMIT || parentDepth <= depthLimit)
+            frontier.add(Pending(more, parentDepth))
+    }
+
+    /**
+     * A MoreChildren waiting to be requested. [ancestors] is only filled in for the rest of a MoreChildren that was
+     * split up, and has the comments from the request before that its IDs can be replies to.
+     */
+    private data class Pending(
+        val more: MoreChildren,
+        val parentDepth: Int,
+        val ancestors: Map<String, Known> = emptyMap()
+    )
+
+    /** The depth of a comment and the fullname of its parent, which is null if the parent's depth is all we know */
+    private data class Known(val depth: Int, val parentFullName: String?)
+}
@@ -0,0 +1,34 @@
+package net.dean.jraw.tree
+
+import net.dean.jraw.models.Comment
+
+/**
+ * Describes how a comment changed when a tree was refreshed.
+ *
+ * @see RootCommentNode.refresh
+ */
+data class CommentTreeChange(
+    /** What happened to the comment */
+    val type: Type,
+
+    /** The node for the comment. Its subject is the newest version of the comment. */
+    val node: CommentNode<Comment>,
+
+    /** The comment as it was before the refresh, or null if it's new */
+    val previous: Comment?
+) {
+    /** The different kinds of changes */
+    enum class Type {
+        /** The comment wasn't in the tree before */
+        ADDED,
+
+        /** The body of the comment was changed by its author */
+        EDITED,
+
+        /** The comment was deleted by its author or removed by a moderator */
+        REMOVED,
+
+        /** The score of the comment changed */
+        SCORE_CHANGED
+    }
+}
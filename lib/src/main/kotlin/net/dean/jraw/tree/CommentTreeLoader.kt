@@ -0,0 +1,91 @@
+package net.dean.jraw.tree
+
+import net.dean.jraw.RedditClient
+import net.dean.jraw.tree.CommentNode.Companion.NO_LIMIT
+import java.util.concurrent.*
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Expands many comment trees at the same time.
+ *
+ * reddit only allows one request to the morechildren endpoint at a time for each client, so a single [RedditClient] can
+ * only expand one tree at a time. Given several clients, [loadFully] expands as many trees in parallel as there are
+ * clients.
+ */
+object CommentTreeLoader {
+    private val threadCount = AtomicInteger()
+
+    /**
+     * Calls [CommentNode.loadFully] on every tree. Each client gets its own thread, which takes the next tree that
+     * hasn't been started yet whenever it finishes one. Every tree is only ever modified by one thread, so its nodes
+     * are safe to use once this method returns.
+     *
+     * If expanding a tree fails, no more trees are started and the exception is rethrown once it has been caught.
+     * Trees that were being expanded by other clients at the time may be left partially expanded.
+     *
+     * @param trees The nodes to expand. Usually these are [RootCommentNode]s for different submissions.
+     * @param clients The clients used to send requests. Using the same client more than once doesn't speed anything up.
+     * @param depthLimit See [CommentNode.loadFully]. Applies to each tree separately.
+     * @param requestLimit See [CommentNode.loadFully]. Applies to each tree separately.
+     * @param policy See [ExpansionPolicy]. Applies to each tree separately.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun loadFully(
+        trees: Collection<CommentNode<*>>,
+        clients: Collection<RedditClient>,
+        depthLimit: Int = NO_LIMIT,
+        requestLimit: Int = NO_LIMIT,
+        policy: ExpansionPolicy = ExpansionPolicy.BREADTH_FIRST
+    ) {
+        if (clients.isEmpty())
+            throw IllegalArgumentException("Expecting at least one RedditClient")
+        if (depthLimit < NO_LIMIT || requestLimit < NO_LIMIT)
+            throw IllegalArgumentException("Expecting a number greater than or equal to -1, got " + if (requestLimit < NO_LIMIT) requestLimit else depthLimit)
+        if (trees.isEmpty()) return
+
+        val queue = ConcurrentLinkedQueue(trees)
+        val workers = clients.distinct().take(trees.size)
+
+        // With only one client (or one tree) there is nothing to run in parallel
+        if (workers.size == 1) {
+            for (tree in trees) tree.loadFully(workers[0], depthLimit, requestLimit, policy)
+            return
+        }
+
+        val executor = Executors.newFixedThreadPool(workers.size) { r ->
+            val t = Thread(r, "jraw-comments-" + threadCount.incrementAndGet())
+            t.isDaemon = true
+            t
+        }
+        val completion = ExecutorCompletionService<Unit>(executor)
+
+        try {
+            for (reddit in workers) {
+                completion.submit {
+                    try {
+                        while (true) {
+                            val tree = queue.poll() ?: break
+                            tree.loadFully(reddit, depthLimit, requestLimit, policy)
+                        }
+                    } catch (e: Throwable) {
+                        // Stop the other workers from starting any new trees
+                        queue.clear()
+                        throw e
+                    }
+                }
+            }
+
+            // Workers finish in any order, so take() makes sure we find out about the first failure right away
+            for (i in workers.indices) {
+                try {
+                    completion.take().get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package net.dean.jraw.tree
+
+import com.squareup.moshi.*
+import net.dean.jraw.JrawUtils
+import net.dean.jraw.databind.Enveloped
+import net.dean.jraw.models.*
+import java.lang.reflect.ParameterizedType
+import java.lang.reflect.Type
+import java.util.*
+
+/** A Comment and its replies, read by [CommentTreeParser] */
+internal class ParsedComment(val comment: Comment, val replies: ParsedReplies)
+
+/** The replies to a submission or comment, read by [CommentTreeParser] */
+internal class ParsedReplies(val comments: List<ParsedComment>, val moreChildren: MoreChildren?) {
+    companion object {
+        @JvmField val EMPTY = ParsedReplies(emptyList(), null)
+    }
+}
+
+/**
+ * The [Comment.replies] of a Comment read by [CommentTreeParser]. It's backed by the [ParsedReplies] the parser created,
+ * so the list of children is only created if someone actually asks for it. Otherwise it behaves like any other Listing,
+ * and it's serialized as one.
+ */
+internal class ParsedRepliesListing(parsed: ParsedReplies) : Listing<NestedIdentifiable>() {
+    /** Can only be changed before [getChildren] is called for the first time */
+    @Volatile var parsed: ParsedReplies = parsed
+        set(value) {
+            if (children != null) throw IllegalStateException("The children have already been created")
+            field = value
+        }
+
+    @Volatile private var children: List<NestedIdentifiable>? = null
+
+    override fun getNextName(): String? = null
+
+    override fun getChildren(): List<NestedIdentifiable> = children ?: createChildren().also { children = it }
+
+    private fun createChildren(): List<NestedIdentifiable> {
+        val parsed = parsed
+        if (parsed.comments.isEmpty() && parsed.moreChildren == null) return emptyList()
+
+        val list = ArrayList<NestedIdentifiable>(parsed.comments.size + 1)
+        parsed.comments.mapTo(list) { it.comment }
+        // reddit always lists the MoreChildren last
+        if (parsed.moreChildren != null) list.add(parsed.moreChildren)
+        return Collections.unmodifiableList(list)
+    }
+
+    private fun toListing(): Listing<NestedIdentifiable> = Listing.create(nextName, getChildren())
+
+    override fun equals(other: Any?) = toListing() == other
+    override fun hashCode() = toListing().hashCode()
+    override fun toString() = toListing().toString()
+
+    /** Serialize a regular Listing instead */
+    private fun writeReplace(): Any = toListing()
+}
+
+/**
+ * Creates a comment tree directly from the response of the comments endpoint (`GET /comments/{article}`).
+ *
+ * Normally, every Comment would keep a [Listing] of its replies, which [RootCommentNode] and [ReplyCommentNode] would
+ * then sort through to create the actual nodes. This parser reads replies straight into a minimal structure instead.
+ * Each Comment's [Comment.replies] is a [ParsedRepliesListing] backed by that structure, which is also how the parser
+ * gets the replies of a Comment back after the generated adapter has read it.
+ */
+internal object CommentTreeParser {
+    private val envelopeOptions = JsonReader.Options.of("kind", "data")
+    private val listingOptions = JsonReader.Options.of("children")
+
+    /** Same as [JrawUtils.moshi], except Comment replies are read with [RepliesAdapter] */
+    internal val moshi = JrawUtils.addAdapters(Moshi.Builder().add(RepliesAdapterFactory)).build()
+
+    private val submissionsAdapter = moshi.adapter<Listing<Submission>>(
+        Types.newParameterizedType(Listing::class.java, Submission::class.java), Enveloped::class.java)
+    private val commentAdapter = moshi.adapter(Comment::class.java)
+    private val moreChildrenAdapter = moshi.adapter(MoreChildren::class.java)
+
+    /** Creates a JsonAdapter that reads a comment tree with the given settings */
+    fun adapter(settings: CommentTreeSettings?): JsonAdapter<RootCommentNode> = readOnlyAdapter { parse(it, settings) }
+
+    /** Creates a JsonAdapter that reads the submission and its replies without creating any nodes */
+    fun repliesAdapter(): JsonAdapter<Pair<Submission, ParsedReplies>> = readOnlyAdapter { parseReplies(it) }
+
+    /**
+     * Reads a comment tree. The JSON is expected to be an array where the first element is a Listing that contains
+     * the submission and the second is a Listing of its comments.
+     */
+    fun parse(reader: JsonReader, settings: CommentTreeSettings?): RootCommentNode {
+        val (submission, replies) = parseReplies(reader)
+        return RootCommentNode(submission, replies, settings)
+    }
+
+    /** Like [parse], but doesn't create any nodes */
+    fun parseReplies(reader: JsonReader): Pair<Submission, ParsedReplies> {
+        reader.beginArray()
+        val submission = submissionsAdapter.fromJson(reader)?.firstOrNull() ?:
+            throw JsonDataException("Expected a submission at ${reader.path}")
+        val replies = readReplies(reader)
+        while (reader.hasNext()) reader.skipValue()
+        reader.endArray()
+
+        return submission to replies
+    }
+
+    private fun <T> readOnlyAdapter(read: (JsonReader) -> T): JsonAdapter<T> = object : JsonAdapter<T>() {
+        override fun fromJson(reader: JsonReader): T = read(reader)
+
+        override fun toJson(writer: JsonWriter, value: T?) {
+            throw UnsupportedOperationException("Serializing comment trees isn't supported")
+        }
+    }
+
+    /** Reads an enveloped Listing of Comments and MoreChildren */
+    private fun readReplies(reader: JsonReader): ParsedReplies {
+        // An empty string is used instead of an empty Listing. See ListingAdapter.
+        if (reader.peek() == JsonReader.Token.STRING) {
+            reader.nextString()
+            return ParsedReplies.EMPTY
+        }
+
+        var replies = ParsedReplies.EMPTY
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.selectName(envelopeOptions)) {
+                // "kind"
+                0 -> {
+                    val kind = reader.nextString()
+                    if (kind != KindConstants.LISTING)
+                        throw IllegalArgumentException("Expected '${KindConstants.LISTING}' at ${reader.path}, got '$kind'")
+                }
+                // "data"
+                1 -> replies = readListingData(reader)
+                -1 -> {
+                    reader.nextName()
+                    reader.skipValue()
+                }
+            }
+        }
+        reader.endObject()
+        return replies
+    }
+
+    private fun readListingData(reader: JsonReader): ParsedReplies {
+        var replies = ParsedReplies.EMPTY
+        reader.beginObject()
+        while (reader.hasNext()) {
+            if (reader.selectName(listingOptions) == 0) {
+                replies = readChildren(reader)
+            } else {
+                reader.nextName()
+                reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return replies
+    }
+
+    private fun readChildren(reader: JsonReader): ParsedReplies {
+        val comments = ArrayList<ParsedComment>()
+        var moreChildren: MoreChildren? = null
+
+        reader.beginArray()
+        while (reader.hasNext()) {
+            val child = readChild(reader)
+            when (child) {
+                is ParsedComment -> comments.add(child)
+                is MoreChildren -> {
+                    if (moreChildren != null)
+                        throw IllegalStateException("More than 1 MoreChildren object found")
+                    moreChildren = child
+                }
+            }
+        }
+        reader.endArray()
+
+        return if (comments.isEmpty() && moreChildren == null) ParsedReplies.EMPTY else ParsedReplies(comments, moreChildren)
+    }
+
+    /** Reads either a [ParsedComment] or a [MoreChildren] */
+    private fun readChild(reader: JsonReader): Any {
+        var kind: String? = null
+        var child: Any? = null
+        // Only used if "data" comes before "kind"
+        var data: Any? = null
+
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.selectName(envelopeOptions)) {
+                0 -> kind = reader.nextString()
+                1 -> if (kind == null) data = reader.readJsonValue() else child = readData(kind, reader, null)
+                -1 -> {
+                    reader.nextName()
+                    reader.skipValue()
+                }
+            }
+        }
+        reader.endObject()
+
+        if (child == null && data != null && kind != null)
+            child = readData(kind, null, data)
+        return child ?: throw JsonDataException("Expected a value at ${reader.path}.data")
+    }
+
+    /** Reads the data of a Comment or MoreChildren from either [reader] or [value] */
+    private fun readData(kind: String, reader: JsonReader?, value: Any?): Any = when (kind) {
+        KindConstants.COMMENT -> {
+            val comment = (if (reader != null) commentAdapter.fromJson(reader) else commentAdapter.fromJsonValue(value))!!
+            ParsedComment(comment, parsedReplies(comment))
+        }
+        KindConstants.MORE_CHILDREN ->
+            (if (reader != null) moreChildrenAdapter.fromJson(reader) else moreChildrenAdapter.fromJsonValue(value))!!
+        else -> throw IllegalArgumentException("Expected Comment or MoreChildren, got kind '$kind'")
+    }
+
+    /** Returns the replies read along with a Comment created by this parser */
+    internal fun parsedReplies(comment: Comment): ParsedReplies =
+        (comment.replies as? ParsedRepliesListing)?.parsed ?:
+            throw IllegalStateException("Comment ${comment.fullName} wasn't read by CommentTreeParser")
+
+    /** Handles `@Enveloped Listing<NestedIdentifiable>`, which is only used for [Comment.replies] */
+    private object RepliesAdapterFactory : JsonAdapter.Factory {
+        override fun create(type: Type, annotations: Set<Annotation>, moshi: Moshi): JsonAdapter<*>? {
+            if (Types.nextAnnotations(annotations, Enveloped::class.java) == null) return null
+            if (type !is ParameterizedType || type.rawType != Listing::class.java) return null
+            if (type.actualTypeArguments.first() != NestedIdentifiable::class.java) return null
+            return RepliesAdapter
+        }
+    }
+
+    /** Reads a Comment's replies into a [ParsedRepliesListing]. Writes them as if there were none. */
+    private object RepliesAdapter : JsonAdapter<Listing<NestedIdentifiable>>() {
+        // Always a new instance, since CommentTreeSnapshot fills in the replies after reading the Comment
+        override fun fromJson(reader: JsonReader): Listing<NestedIdentifiable> = ParsedRepliesListing(readReplies(reader))
+
+        override fun toJson(writer: JsonWriter, value: Listing<NestedIdentifiable>?) {
+            // Replies are part of the tree, not the Comment. reddit uses an empty string for comments without replies.
+            writer.value("")
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package net.dean.jraw.tree
+
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.SnapshotJsonReader
+import net.dean.jraw.models.Comment
+import net.dean.jraw.models.CommentSort
+import net.dean.jraw.models.MoreChildren
+import net.dean.jraw.models.Submission
+import okio.*
+import java.io.File
+import java.nio.channels.Channels
+import java.nio.channels.ReadableByteChannel
+import java.nio.channels.WritableByteChannel
+
+/**
+ * Saves whole comment trees in a compact binary format and loads them again, without having to send any requests.
+ *
+ * Submissions and comments are converted to the same JSON values reddit sends (minus their replies) using the
+ * generated Moshi adapters, so no reflection is used in either direction. Those values are then written as binary
+ * instead of text: object keys and short strings like authors and subreddits are only written once and referred to by
+ * their index after that, and numbers aren't written as text. The shape of the tree and every [MoreChildren] follow
+ * each submission or comment, along with which of its replies reddit sent as part of the comment itself (its
+ * [Comment.replies]). When a snapshot is loaded, the adapters read those values straight from the binary data, and the
+ * tree is created the same way [RootCommentNode] does when reading the response of the comments endpoint.
+ *
+ * Every snapshot starts with [MAGIC] and the version of the format it was written with. Snapshots from newer versions
+ * of the format are rejected.
+ *
+ * ```kotlin
+ * CommentTreeSnapshot.write(tree, file)
+ * val sameTree = CommentTreeSnapshot.read(file)
+ * ```
+ */
+object CommentTreeSnapshot {
+    /** The first 4 bytes of every snapshot: "JRCT" */
+    const val MAGIC = 0x4A524354
+
+    /** The current version of the format. Version 1 didn't record each comment's [Comment.replies]. */
+    const val VERSION = 2
+
+    /** Strings longer than this are written as they are instead of being added to the string table */
+    private const val MAX_SHARED_STRING_LENGTH = 64
+
+    // Tags that describe the JSON value that follows. SnapshotJsonReader reads values from them.
+    internal const val TAG_NULL = 0
+    internal const val TAG_FALSE = 1
+    internal const val TAG_TRUE = 2
+    internal const val TAG_LONG = 3
+    internal const val TAG_DOUBLE = 4
+    internal const val TAG_STRING = 5
+    internal const val TAG_NEW_SHARED_STRING = 6
+    internal const val TAG_SHARED_STRING = 7
+    internal const val TAG_ARRAY = 8
+    internal const val TAG_OBJECT = 9
+
+    // Nulls are written too, otherwise the adapters would complain about missing properties when reading them again
+    private val submissionAdapter: JsonAdapter<Submission> =
+        CommentTreeParser.moshi.adapter(Submission::class.java).serializeNulls()
+    private val commentAdapter: JsonAdapter<Comment> =
+        CommentTreeParser.moshi.adapter(Comment::class.java).serializeNulls()
+
+    /** Writes the whole [tree] to the [sink] without closing it */
+    @JvmStatic fun write(tree: RootCommentNode, sink: BufferedSink) {
+        sink.writeInt(MAGIC)
+        sink.writeInt(VERSION)
+
+        val writer = Writer(sink)
+        writer.writeString(tree.settings.submissionId)
+        writer.writeString(tree.settings.sort.name)
+        writer.writeValue(submissionAdapter.toJsonValue(tree.subject))
+        writer.writeReplies(tree)
+        sink.flush()
+    }
+
+    /** Writes the whole [tree] to the [file], replacing anything it contained before */
+    @JvmStatic fun write(tree: RootCommentNode, file: File) {
+        Okio.buffer(Okio.sink(file)).use { write(tree, it) }
+    }
+
+    /** Writes the whole [tree] to the [channel] without closing it */
+    @JvmStatic fun write(tree: RootCommentNode, channel: WritableByteChannel) {
+        write(tree, Okio.buffer(Okio.sink(Channels.newOutputStream(channel))))
+    }
+
+    /**
+     * Reads a tree written by [write].
+     *
+     * @throws IllegalArgumentException If the data isn't a snapshot or was written by a newer version of the format
+     */
+    @JvmStatic fun read(source: BufferedSource): RootCommentNode {
+        val magic = source.readInt()
+        if (magic != MAGIC)
+            throw IllegalArgumentException("Not a comment tree snapshot")
+        val version = source.readInt()
+        if (version < 1 || version > VERSION)
+            throw IllegalArgumentException("Unsupported snapshot version $version, expected at most $VERSION")
+
+        val reader = Reader(source, version)
+        val settings = CommentTreeSettings(
+            submissionId = reader.readString(),
+            sort = CommentSort.valueOf(reader.readString())
+        )
+
+        val submission = reader.readModel(submissionAdapter)
+        return RootCommentNode(submission, reader.readReplies(), settings)
+    }
+
+    /** Reads a tree from a file created by [write] */
+    @JvmStatic fun read(file: File): RootCommentNode = Okio.buffer(Okio.source(file)).use { read(it) }
+
+    /**
+     * Reads a tree from the [channel] without closing it.
+     *
+     * The channel is read in chunks, so bytes that come after the end of the snapshot are likely to be read from it as
+     * well, and they're lost once this returns. To read anything else after the snapshot, wrap the channel in a single
+     * BufferedSource and pass that to [read] instead. Bytes that haven't been used yet are kept in its buffer.
+     */
+    @JvmStatic fun read(channel: ReadableByteChannel): RootCommentNode =
+        read(Okio.buffer(Okio.source(Channels.newInputStream(channel))))
+
+    private class Writer(private val sink: BufferedSink) {
+        /** Maps every string in the string table to its index */
+        private val strings = HashMap<String, Int>()
+
+        /**
+         * Writes the replies and MoreChildren of a node, followed by every reply in pre-order:
+         *
+         * - The MoreChildren
+         * - The amount of replies
+         * - For each reply, its JSON value, its listed replies (see [writeListedReplies]) and its own replies
+         */
+        fun writeReplies(node: CommentNode<*>) {
+            writeMoreChildren(node.moreChildren)
+
+            writeVarint(node.replies.size.toLong())
+            for (reply in node.replies) {
+                writeValue(commentAdapter.toJsonValue(reply.subject))
+                writeListedReplies(reply)
+                writeReplies(reply)
+            }
+        }
+
+        /**
+         * Writes which replies of the node were in its comment's own [Comment.replies]: the amount of them (they're
+         * always the node's first replies), followed by the MoreChildren that was listed with them.
+         */
+        private fun writeListedReplies(node: CommentNode<Comment>) {
+            var listed = 0
+            var more: MoreChildren? = null
+            for (child in node.subject.replies) {
+                if (child is MoreChildren) {
+                    more = child
+                } else if (listed == node.replies.size || node.replies[listed].subject.fullName != child.fullName) {
+                    // Shouldn't happen, but don't claim the reply is in the tree when it isn't
+                    break
+                } else {
+                    listed++
+                }
+            }
+
+            writeVarint(listed.toLong())
+            writeMoreChildren(more)
+        }
+
+        /** Writes a flag, then the MoreChildren's fullname, ID, parent fullname and children IDs */
+        private fun writeMoreChildren(more: MoreChildren?) {
+            sink.writeByte(if (more == null) 0 else 1)
+            if (more != null) {
+                writeString(more.fullName)
+                writeString(more.id)
+                writeString(more.parentFullName)
+                writeVarint(more.childrenIds.size.toLong())
+                for (id in more.childrenIds)
+                    writeString(id)
+            }
+        }
+
+        /** Writes a value created by [JsonAdapter.toJsonValue] */
+        fun writeValue(value: Any?) {
+            when (value) {
+                null -> sink.writeByte(TAG_NULL)
+                is Boolean -> sink.writeByte(if (value) TAG_TRUE else TAG_FALSE)
+                is Long, is Int, is Short, is Byte -> {
+                    sink.writeByte(TAG_LONG)
+                    writeVarint((value as Number).toLong())
+                }
+                is Number -> {
+                    sink.writeByte(TAG_DOUBLE)
+                    sink.writeLong(java.lang.Double.doubleToRawLongBits(value.toDouble()))
+                }
+                is String -> writeString(value)
+                is List<*> -> {
+                    sink.writeByte(TAG_ARRAY)
+                    writeVarint(value.size.toLong())
+                    for (element in value) writeValue(element)
+                }
+                is Map<*, *> -> {
+                    sink.writeByte(TAG_OBJECT)
+                    writeVarint(value.size.toLong())
+                    for ((k, v) in value) {
+                        writeString(k as String)
+                        writeValue(v)
+                    }
+                }
+                else -> throw IllegalArgumentException("Unexpected JSON value: " + value.javaClass)
+            }
+        }
+
+        /** Writes a string, or its index in the string table if it has been written before */
+        fun writeString(value: String) {
+            val index = strings[value]
+            if (index != null) {
+                sink.writeByte(TAG_SHARED_STRING)
+                writeVarint(index.toLong())
+                return
+            }
+
+            val shared = value.length <= MAX_SHARED_STRING_LENGTH
+            if (shared) strings[value] = strings.size
+            sink.writeByte(if (shared) TAG_NEW_SHARED_STRING else TAG_STRING)
+            writeVarint(Utf8.size(value))
+            sink.writeUtf8(value)
+        }
+
+        /** Writes a ZigZag-encoded variable-length integer, so small numbers only take up one byte */
+        private fun writeVarint(value: Long) {
+            var v = (value shl 1) xor (value shr 63)
+            while (v and 0x7FL.inv() != 0L) {
+                sink.writeByte(((v and 0x7F) or 0x80).toInt())
+                v = v ushr 7
+            }
+            sink.writeByte(v.toInt())
+        }
+    }
+
+    private class Reader(private val source: BufferedSource, private val version: Int) {
+        /** Reads every JSON value, including strings that aren't part of a model */
+        private val json = SnapshotJsonReader(source)
+
+        fun readReplies(): ParsedReplies {
+            val moreChildren = readMoreChildren()
+
+            val count = json.readVarint().toInt()
+            if (count == 0 && moreChildren == null) return ParsedReplies.EMPTY
+
+            val comments = ArrayList<ParsedComment>(count)
+            for (i in 0 until count) {
+                val comment = readModel(commentAdapter)
+                val listed = if (version < 2) 0 else json.readVarint().toInt()
+                val listedMore = if (version < 2) null else readMoreChildren()
+                val replies = readReplies()
+
+                // Replies aren't part of the Comment's JSON in a snapshot, so they're filled in here
+                if (listed > 0 || listedMore != null)
+                    (comment.replies as ParsedRepliesListing).parsed =
+                        ParsedReplies(replies.comments.subList(0, listed), listedMore)
+                comments.add(ParsedComment(comment, replies))
+            }
+            return ParsedReplies(comments, moreChildren)
+        }
+
+        private fun readMoreChildren(): MoreChildren? {
+            if (source.readByte().toInt() == 0) return null
+            val fullName = readString()
+            val id = readString()
+            val parentFullName = readString()
+            val childrenIds = List(json.readVarint().toInt()) { readString() }
+            return MoreChildren.create(fullName, id, parentFullName, childrenIds)
+        }
+
+        /** Reads a model straight from its binary JSON value, without creating a Map for it first */
+        fun <T> readModel(adapter: JsonAdapter<T>): T =
+            adapter.fromJson(json) ?: throw IllegalArgumentException("Unexpected null value in snapshot")
+
+        fun readString(): String {
+            if (json.peek() != JsonReader.Token.STRING)
+                throw IllegalArgumentException("Expected a string in snapshot")
+            return json.nextString()
+        }
+    }
+}
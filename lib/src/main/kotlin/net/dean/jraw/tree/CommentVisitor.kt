@@ -0,0 +1,23 @@
+package net.dean.jraw.tree
+
+/**
+ * Visits the nodes of a comment tree in pre-order, deciding after every node how to continue.
+ *
+ * @see CommentNode.visit
+ */
+interface CommentVisitor {
+    /** Called for each node. The result determines which node is visited next. */
+    fun visit(node: CommentNode<*>): Result
+
+    /** What to do after visiting a node */
+    enum class Result {
+        /** Go on to this node's children, if it has any */
+        CONTINUE,
+
+        /** Don't visit any of this node's children, go on to its next sibling instead */
+        SKIP_SUBTREE,
+
+        /** Don't visit any more nodes */
+        STOP
+    }
+}
@@ -0,0 +1,327 @@
+package net.dean.jraw.tree
+
+import net.dean.jraw.models.PublicContribution
+import java.util.*
+
+/**
+ * A read-only copy of a comment tree that uses much less memory than the [CommentNode]s it was created from.
+ *
+ * Instead of one object per node, the data for every node is stored in primitive arrays. Nodes are referred to by
+ * their index in those arrays. The node the tree was created from is always at index 0, and the rest are stored in
+ * pre-order, so a node's descendants always directly follow it. Authors are only stored once no matter how many
+ * comments they've written, and all fullnames and bodies are kept in a single byte array.
+ *
+ * Only some of each node's data is kept: its fullname, author, body, score, creation date, and whether it had more
+ * children available to load. Use [from] to create a CompactCommentTree.
+ */
+class CompactCommentTree private constructor(
+    /** The amount of nodes in this tree, including the root */
+    val size: Int,
+    private val parents: IntArray,
+    private val depths: IntArray,
+    private val subtreeSizes: IntArray,
+    private val scores: IntArray,
+    private val createdTimes: LongArray,
+    private val authorIndexes: IntArray,
+    private val authors: Array<String>,
+    private val fullNames: TextStore,
+    private val bodies: TextStore,
+    private val moreChildren: BitSet
+) {
+    /** The root of this tree. Equivalent to `node(0)`. */
+    val root: Node
+        get() = node(0)
+
+    /** Returns a view of the node at the given index */
+    fun node(index: Int): Node {
+        checkIndex(index)
+        return Node(index)
+    }
+
+    /** The index of the given node's parent, or -1 for the root */
+    fun parent(index: Int) = parents[checkIndex(index)]
+
+    /** The depth of the given node, as it was in the [CommentNode] this tree was created from */
+    fun depth(index: Int) = depths[checkIndex(index)]
+
+    /** The amount of direct and indirect children the given node has */
+    fun totalSize(index: Int) = subtreeSizes[checkIndex(index)] - 1
+
+    /** The score of the given node's submission or comment */
+    fun score(index: Int) = scores[checkIndex(index)]
+
+    /** When the given node's submission or comment was created, in milliseconds since the epoch */
+    fun created(index: Int) = createdTimes[checkIndex(index)]
+
+    /** The author of the given node's submission or comment */
+    fun author(index: Int) = authors[authorIndexes[checkIndex(index)]]
+
+    /** The fullname of the given node's submission or comment */
+    fun fullName(index: Int) = fullNames[checkIndex(index)]!!
+
+    /** The body of the given node's submission or comment. See [PublicContribution.body]. */
+    fun body(index: Int) = bodies[checkIndex(index)]
+
+    /** If the given node had more children that weren't loaded yet when this tree was created */
+    fun hasMoreChildren(index: Int) = moreChildren[checkIndex(index)]
+
+    /** The amount of different authors in this tree */
+    val authorCount: Int
+        get() = authors.size
+
+    /** Returns the indexes of the direct children of the given node */
+    fun replies(index: Int): IntArray {
+        checkIndex(index)
+        var count = 0
+        forEachReply(index) { count++ }
+
+        val replies = IntArray(count)
+        var i = 0
+        forEachReply(index) { replies[i++] = it }
+        return replies
+    }
+
+    private inline fun forEachReply(index: Int, action: (Int) -> Unit) {
+        val end = index + subtreeSizes[index]
+        var child = index + 1
+        while (child < end) {
+            action(child)
+            child += subtreeSizes[child]
+        }
+    }
+
+    /**
+     * Walks the tree in the given order. This is the equivalent of [CommentNode.walkTree] and visits nodes in the same
+     * order that [TreeTraverser] would for the tree this one was created from.
+     */
+    fun walkTree(order: TreeTraversalOrder = TreeTraversalOrder.PRE_ORDER): Sequence<Node> =
+        Sequence { indexes(order) }.map { Node(it) }
+
+    /** Like [walkTree], but only returns the indexes of the nodes */
+    fun indexes(order: TreeTraversalOrder = TreeTraversalOrder.PRE_ORDER): Iterator<Int> = when (order) {
+        // Nodes are already stored in pre-order
+        TreeTraversalOrder.PRE_ORDER -> (0 until size).iterator()
+        TreeTraversalOrder.POST_ORDER -> PostOrderIterator()
+        TreeTraversalOrder.BREADTH_FIRST -> BreadthFirstIterator()
+    }
+
+    private fun checkIndex(index: Int): Int {
+        if (index < 0 || index >= size)
+            throw IndexOutOfBoundsException("Expecting an index between 0 and ${size - 1}, got $index")
+        return index
+    }
+
+    /**
+     * Goes through the nodes in pre-order, but only returns a node once every node in its subtree has been visited.
+     * Only needs to remember the nodes between the current node and the root.
+     */
+    private inner class PostOrderIterator : Iterator<Int> {
+        private val ancestors = IntStack()
+        private var nextPreOrder = 0
+
+        override fun hasNext() = nextPreOrder < size || !ancestors.isEmpty()
+
+        override fun next(): Int {
+            while (nextPreOrder < size) {
+                // The top of the stack is done once the next node in pre-order isn't part of its subtree
+                val top = if (ancestors.isEmpty()) -1 else ancestors.peek()
+                if (top >= 0 && top + subtreeSizes[top] <= nextPreOrder)
+                    return ancestors.pop()
+                ancestors.push(nextPreOrder++)
+            }
+
+            if (ancestors.isEmpty()) throw NoSuchElementException()
+            return ancestors.pop()
+        }
+    }
+
+    private inner class BreadthFirstIterator : Iterator<Int> {
+        private val queue = IntArray(size)
+        private var head = 0
+        private var tail = 0
+
+        init {
+            if (size > 0) queue[tail++] = 0
+        }
+
+        override fun hasNext() = head < tail
+
+        override fun next(): Int {
+            if (!hasNext()) throw NoSuchElementException()
+            val index = queue[head++]
+            forEachReply(index) { queue[tail++] = it }
+            return index
+        }
+    }
+
+    /**
+     * A view of one of the nodes in a [CompactCommentTree]. These are created on demand and only hold on to their
+     * index, so they're cheap to create and throw away.
+     */
+    inner class Node internal constructor(
+        /** This node's index in the tree */
+        val index: Int
+    ) {
+        /** This node's parent, or null if this is the root */
+        val parent: Node?
+            get() = parents[index].let { if (it < 0) null else Node(it) }
+
+        /** @see CompactCommentTree.depth */
+        val depth: Int get() = depths[index]
+
+        /** @see CompactCommentTree.score */
+        val score: Int get() = scores[index]
+
+        /** @see CompactCommentTree.created */
+        val created: Long get() = createdTimes[index]
+
+        /** @see CompactCommentTree.author */
+        val author: String get() = authors[authorIndexes[index]]
+
+        /** @see CompactCommentTree.fullName */
+        val fullName: String get() = fullNames[index]!!
+
+        /** @see CompactCommentTree.body */
+        val body: String? get() = bodies[index]
+
+        /** The direct children of this node */
+        val replies: List<Node> get() = replies(index).map { Node(it) }
+
+        /** @see CompactCommentTree.totalSize */
+        fun totalSize() = subtreeSizes[index] - 1
+
+        /** @see CompactCommentTree.hasMoreChildren */
+        fun hasMoreChildren() = moreChildren[index]
+
+        override fun equals(other: Any?) =
+            other is Node && other.index == index && other.tree === this@CompactCommentTree
+
+        override fun hashCode() = index
+
+        override fun toString() = "CompactCommentTree.Node(index=$index, fullName=$fullName)"
+
+        private val tree: CompactCommentTree get() = this@CompactCommentTree
+    }
+
+    /** Stores a list of nullable strings as UTF-8 in one byte array */
+    private class TextStore(expectedSize: Int) {
+        private var data = ByteArray(16 * expectedSize)
+        private var offsets = IntArray(expectedSize + 1)
+        private val nulls = BitSet()
+        private var count = 0
+
+        fun add(text: String?) {
+            if (count + 1 >= offsets.size)
+                offsets = offsets.copyOf(offsets.size * 2)
+
+            val bytes = text?.toByteArray(Charsets.UTF_8)
+            if (bytes == null) nulls.set(count)
+
+            val start = offsets[count]
+            val end = start + (bytes?.size ?: 0)
+            if (end > data.size)
+                data = data.copyOf(maxOf(end, data.size * 2))
+            bytes?.copyInto(data, start)
+
+            offsets[++count] = end
+        }
+
+        operator fun get(index: Int): String? {
+            if (nulls[index]) return null
+            return String(data, offsets[index], offsets[index + 1] - offsets[index], Charsets.UTF_8)
+        }
+
+        /** Gets rid of any unused space at the end of the arrays */
+        fun trim() {
+            data = data.copyOf(offsets[count])
+            offsets = offsets.copyOf(count + 1)
+        }
+
+        private fun ByteArray.copyInto(destination: ByteArray, offset: Int) =
+            System.arraycopy(this, 0, destination, offset, size)
+    }
+
+    /** A growable stack of ints */
+    private class IntStack {
+        private var data = IntArray(16)
+        private var size = 0
+
+        fun isEmpty() = size == 0
+        fun peek() = data[size - 1]
+        fun pop() = data[--size]
+        fun push(value: Int) {
+            if (size == data.size) data = data.copyOf(size * 2)
+            data[size++] = value
+        }
+    }
+
+    /** */
+    companion object {
+        /**
+         * Copies the given node and all of its children into a new CompactCommentTree. The given node will be the
+         * root of the new tree. Only nodes that have already been loaded are copied.
+         */
+        @JvmStatic
+        fun from(root: CommentNode<*>): CompactCommentTree {
+            val nodes = ArrayList<CommentNode<*>>()
+            val parentList = ArrayList<Int>()
+
+            // Pre-order traversal that also remembers the index of every node's parent
+            val stack = ArrayDeque<Pair<CommentNode<*>, Int>>()
+            stack.push(root to -1)
+            while (stack.isNotEmpty()) {
+                val (node, parent) = stack.pop()
+                val index = nodes.size
+                nodes.add(node)
+                parentList.add(parent)
+                for (i in node.replies.size - 1 downTo 0)
+                    stack.push(node.replies[i] to index)
+            }
+
+            val size = nodes.size
+            val parents = parentList.toIntArray()
+            val depths = IntArray(size)
+            val scores = IntArray(size)
+            val createdTimes = LongArray(size)
+            val authorIndexes = IntArray(size)
+            val authorDictionary = LinkedHashMap<String, Int>()
+            val fullNames = TextStore(size)
+            val bodies = TextStore(size)
+            val moreChildren = BitSet(size)
+
+            for ((i, node) in nodes.withIndex()) {
+                val subject: PublicContribution<*> = node.subject
+                depths[i] = node.depth
+                scores[i] = subject.score
+                createdTimes[i] = subject.created.time
+                authorIndexes[i] = authorDictionary.getOrPut(subject.author) { authorDictionary.size }
+                fullNames.add(subject.fullName)
+                bodies.add(subject.body)
+                if (node.hasMoreChildren()) moreChildren.set(i)
+            }
+
+            // Every node's subtree is itself plus the subtrees of its children. Children always come after their
+            // parents, so going backwards means every child is done before its parent.
+            val subtreeSizes = IntArray(size) { 1 }
+            for (i in size - 1 downTo 1)
+                subtreeSizes[parents[i]] += subtreeSizes[i]
+
+            fullNames.trim()
+            bodies.trim()
+
+            return CompactCommentTree(
+                size = size,
+                parents = parents,
+                depths = depths,
+                subtreeSizes = subtreeSizes,
+                scores = scores,
+                createdTimes = createdTimes,
+                authorIndexes = authorIndexes,
+                authors = authorDictionary.keys.toTypedArray(),
+                fullNames = fullNames,
+                bodies = bodies,
+                moreChildren = moreChildren
+            )
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package net.dean.jraw.tree
+
+import net.dean.jraw.models.MoreChildren
+
+/**
+ * Decides which [MoreChildren] [CommentNode.loadFully] expands, and in which order. When there's a request limit, the
+ * requests are spent on the MoreChildren with the highest priority first.
+ *
+ * @see CommentNode.loadFully
+ */
+interface ExpansionPolicy {
+    /**
+     * Returns false if the MoreChildren of [parent] shouldn't be expanded at all. [childCount] is the amount of
+     * comments that are still hidden behind it. By default, all of them are expanded.
+     */
+    fun shouldExpand(parent: CommentNode<*>, childCount: Int): Boolean = true
+
+    /**
+     * Returns how valuable the comments hidden behind the MoreChildren of [parent] are. Higher priorities are expanded
+     * first. MoreChildren with the same priority are expanded in the order they were found.
+     */
+    fun priority(parent: CommentNode<*>, childCount: Int): Double
+
+    /** */
+    companion object {
+        /** Expands shallower comments before deeper ones. This is what [CommentNode.loadFully] uses by default. */
+        val BREADTH_FIRST: ExpansionPolicy = object : ExpansionPolicy {
+            override fun priority(parent: CommentNode<*>, childCount: Int) = -parent.depth.toDouble()
+        }
+
+        /**
+         * Expands the replies to the comments with the highest score first. Top-level comments come before anything
+         * else, no matter what the submission's score is.
+         */
+        val HIGHEST_SCORE_FIRST: ExpansionPolicy = object : ExpansionPolicy {
+            override fun priority(parent: CommentNode<*>, childCount: Int) =
+                if (parent.depth == 0) Double.POSITIVE_INFINITY else parent.subject.score.toDouble()
+        }
+
+        /**
+         * Like [HIGHEST_SCORE_FIRST], but ignores everything below comments with a score lower than [minScore]. The
+         * replies to the submission are always expanded.
+         */
+        fun minScore(minScore: Int): ExpansionPolicy = object : ExpansionPolicy {
+            override fun shouldExpand(parent: CommentNode<*>, childCount: Int) =
+                parent.depth == 0 || parent.subject.score >= minScore
+
+            override fun priority(parent: CommentNode<*>, childCount: Int) =
+                HIGHEST_SCORE_FIRST.priority(parent, childCount)
+        }
+    }
+}
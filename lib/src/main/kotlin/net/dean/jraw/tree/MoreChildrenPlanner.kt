@@ -0,0 +1,153 @@
+package net.dean.jraw.tree
+
+import net.dean.jraw.RedditClient
+import net.dean.jraw.models.Comment
+import net.dean.jraw.models.MoreChildren
+import net.dean.jraw.models.NestedIdentifiable
+import net.dean.jraw.tree.AbstractCommentNode.Companion.MORE_CHILDREN_LIMIT
+import net.dean.jraw.tree.CommentNode.Companion.NO_LIMIT
+import java.util.*
+
+/**
+ * Expands a comment tree for [CommentNode.loadFully].
+ *
+ * Instead of requesting every node's [MoreChildren] separately, the IDs of every pending MoreChildren are packed into
+ * requests of up to [MORE_CHILDREN_LIMIT] IDs. reddit includes the parent of every comment it sends back, so the
+ * results can be routed back to the right nodes using the tree's index, no matter which MoreChildren they came from.
+ * The [ExpansionPolicy] decides which nodes are expanded and in which order. Nodes with the same priority are expanded
+ * in the order they were found.
+ */
+internal class MoreChildrenPlanner(
+    private val root: AbstractCommentNode<*>,
+    private val reddit: RedditClient,
+    private val depthLimit: Int,
+    private val requestLimit: Int,
+    private val policy: ExpansionPolicy
+) {
+    /** Nodes with MoreChildren that have yet to be requested, in the order they should be requested */
+    private val pending = PriorityQueue<Entry>()
+
+    /** Every node in [pending] */
+    private val queued: MutableSet<AbstractCommentNode<*>> = Collections.newSetFromMap(IdentityHashMap())
+
+    private var requests = 0
+
+    /** Incremented for every new entry so that entries with the same priority stay in the order they were added */
+    private var sequence = 0L
+
+    fun run() {
+        for (node in root.walkTree(TreeTraversalOrder.BREADTH_FIRST))
+            add(node as AbstractCommentNode<*>)
+
+        while (pending.isNotEmpty() && (requestLimit == NO_LIMIT || requests < requestLimit)) {
+            // Thread continuations require a whole new comment tree to be requested, so they can't be packed
+            if (pending.peek().node.moreChildren!!.isThreadContinuation) {
+                continueThread(poll())
+                continue
+            }
+
+            val ids = pack()
+            if (ids.isEmpty()) continue
+
+            requests++
+            attach(root.requestMoreChildren(reddit, ids))
+        }
+    }
+
+    /** Takes up to [MORE_CHILDREN_LIMIT] IDs from the MoreChildren at the front of the queue */
+    private fun pack(): List<String> {
+        val ids = ArrayList<String>(MORE_CHILDREN_LIMIT)
+
+        while (pending.isNotEmpty() && ids.size < MORE_CHILDREN_LIMIT) {
+            val more = pending.peek().node.moreChildren!!
+            if (more.isThreadContinuation)
+                break
+
+            val entry = pending.poll()
+            val node = entry.node
+            queued.remove(node)
+            val space = MORE_CHILDREN_LIMIT - ids.size
+            ids.addAll(more.childrenIds.take(space))
+
+            val leftoverIds = more.childrenIds.drop(space)
+            if (leftoverIds.isEmpty()) {
+                // If reddit can't send all of them, it'll send a new MoreChildren for this node
+                node.moreChildren = null
+            } else {
+                // Request the rest of them next time. Keeping the same entry puts the node back where it was.
+                node.moreChildren = MoreChildren.create(more.fullName, more.id, more.parentFullName, leftoverIds)
+                pending.add(entry)
+                queued.add(node)
+            }
+        }
+
+        return ids
+    }
+
+    /**
+     * Inserts Comments and MoreChildren from a morechildren response into the tree. Objects are listed in pre-order,
+     * so the parent of every object is either already in the tree or was listed before it.
+     */
+    private fun attach(children: List<NestedIdentifiable>) {
+        for (child in children) {
+            val parent = root.index[child.parentFullName] ?:
+                throw IllegalStateException("Failed to properly create tree: no parent for ${child.fullName}")
+
+            when (child) {
+                is Comment -> add(parent.addReply(child))
+                is MoreChildren -> {
+                    val existing = parent.moreChildren
+                    if (existing == null) {
+                        parent.moreChildren = child
+                        add(parent)
+                    } else {
+                        // We haven't requested all of this node's IDs yet, so combine the two
+                        parent.moreChildren = MoreChildren.create(
+                            child.fullName,
+                            child.id,
+                            child.parentFullName,
+                            existing.childrenIds + child.childrenIds
+                        )
+                    }
+                }
+                else -> throw IllegalArgumentException("Expected Comment or MoreChildren, got " + child.javaClass)
+            }
+        }
+    }
+
+    /** Expands a node whose MoreChildren is a thread continuation using [CommentNode.replaceMore] */
+    private fun continueThread(node: AbstractCommentNode<*>) {
+        requests++
+        for (reply in node.replaceMore(reddit))
+            for (descendant in reply.walkTree(TreeTraversalOrder.BREADTH_FIRST))
+                add(descendant as AbstractCommentNode<*>)
+        add(node)
+    }
+
+    /** Queues a node's MoreChildren if it should be expanded */
+    private fun add(node: AbstractCommentNode<*>) {
+        val more = node.moreChildren ?: return
+        val withinDepth = node === root || depthLimit == NO_LIMIT || node.depth <= depthLimit
+        if (!withinDepth || node in queued) return
+
+        val childCount = more.childrenIds.size
+        if (!policy.shouldExpand(node, childCount)) return
+
+        queued.add(node)
+        pending.add(Entry(node, policy.priority(node, childCount), sequence++))
+    }
+
+    private fun poll(): AbstractCommentNode<*> {
+        val node = pending.poll().node
+        queued.remove(node)
+        return node
+    }
+
+    /** A node in [pending]. The entry with the highest priority comes first. */
+    private class Entry(val node: AbstractCommentNode<*>, val priority: Double, val sequence: Long) : Comparable<Entry> {
+        override fun compareTo(other: Entry): Int {
+            val byPriority = other.priority.compareTo(priority)
+            return if (byPriority != 0) byPriority else sequence.compareTo(other.sequence)
+        }
+    }
+}
@@ -16,6 +16,15 @@ class ReplyCommentNode(
 ) : AbstractCommentNode<Comment>(depth, moreChildren, comment, settings) {
 
     init {
-        initReplies(comment.replies)
+        val listed = comment.replies
+        if (listed is ParsedRepliesListing) initReplies(listed.parsed) else initReplies(listed)
+    }
+
+    /** Creates a node for a comment read by [CommentTreeParser] */
+    internal constructor(depth: Int, parsed: ParsedComment, settings: CommentTreeSettings, parent: CommentNode<*>) :
+        this(depth, null, parsed.comment, settings, parent) {
+
+        // A tree read from a snapshot can have more replies than its comment was listed with
+        initReplies(parsed.replies)
     }
 }
@@ -1,9 +1,9 @@
 package net.dean.jraw.tree
 
-import net.dean.jraw.models.Listing
-import net.dean.jraw.models.NestedIdentifiable
-import net.dean.jraw.models.Submission
+import net.dean.jraw.RedditClient
+import net.dean.jraw.models.*
 import net.dean.jraw.references.CommentsRequest
+import net.dean.jraw.tree.CommentTreeChange.Type.*
 
 /** A RootCommentNode is a special CommentNode dedicated to the tree's true root: the submission. */
 class RootCommentNode(submission: Submission, replies: Listing<NestedIdentifiable>, settings: CommentTreeSettings?) : AbstractCommentNode<Submission>(
@@ -20,4 +20,85 @@ class RootCommentNode(submission: Submission, replies: Listing<NestedIdentifiabl
     init {
         initReplies(replies)
     }
+
+    /** Creates a tree from replies read by [CommentTreeParser] */
+    internal constructor(submission: Submission, replies: ParsedReplies, settings: CommentTreeSettings?) :
+        this(submission, Listing.empty(), settings) {
+
+        initReplies(replies)
+    }
+
+    /**
+     * Finds the node for the submission or comment with the given fullname (e.g. "t1_dxm3jjx") anywhere in this tree,
+     * or null if there isn't one. Unlike searching through [walkTree], this doesn't have to visit every node.
+     */
+    fun findByFullName(fullName: String): CommentNode<*>? = index[fullName]
+
+    /**
+     * Requests the comments for this submission again and merges them into this tree instead of creating a new one.
+     * Comments that are already in the tree are updated in place, new comments are added after the existing replies
+     * to their parent, and the submission itself is replaced with its newest version.
+     *
+     * Only comments that reddit sends with the submission are compared, so comments that were loaded through
+     * [MoreChildren] are only updated if they're part of that response too. Deleted and removed comments stay in the
+     * tree, since reddit still sends them (with "[deleted]" or "[removed]" as their body).
+     *
+     * @return Everything that changed, in pre-order
+     */
+    fun refresh(reddit: RedditClient): List<CommentTreeChange> {
+        val (submission, replies) = reddit.submission(settings.submissionId)
+            .requestComments(CommentsRequest(sort = settings.sort))
+            .deserializeWith(CommentTreeParser.repliesAdapter())
+
+        updateSubject(submission)
+        val changes = ArrayList<CommentTreeChange>()
+        merge(this, replies, changes)
+        return changes
+    }
+
+    private fun merge(parent: AbstractCommentNode<*>, replies: ParsedReplies, changes: MutableList<CommentTreeChange>) {
+        for (reply in replies.comments) {
+            val existing = index[reply.comment.fullName] as? ReplyCommentNode
+
+            if (existing == null) {
+                val node = parent.addReply(reply)
+                for (added in node.walkTree())
+                    changes.add(CommentTreeChange(ADDED, added as ReplyCommentNode, previous = null))
+            } else {
+                update(existing, reply.comment, changes)
+                merge(existing, reply.replies, changes)
+            }
+        }
+
+        // Don't ask for comments that are already in the tree again
+        val more = replies.moreChildren ?: parent.moreChildren
+        parent.moreChildren = if (more == null || more.isThreadContinuation) more else {
+            val remaining = more.childrenIds.filter { KindConstants.COMMENT + '_' + it !in index }
+            when {
+                remaining.isEmpty() -> null
+                remaining.size == more.childrenIds.size -> more
+                else -> MoreChildren.create(more.fullName, more.id, more.parentFullName, remaining)
+            }
+        }
+    }
+
+    private fun update(node: ReplyCommentNode, comment: Comment, changes: MutableList<CommentTreeChange>) {
+        val old = node.subject
+        if (old == comment) return
+
+        node.updateSubject(comment)
+        val wasRemoved = old.body in REMOVED_BODIES
+        if (comment.body in REMOVED_BODIES && !wasRemoved)
+            changes.add(CommentTreeChange(REMOVED, node, old))
+        else if (old.body != comment.body || old.edited != comment.edited)
+            changes.add(CommentTreeChange(EDITED, node, old))
+
+        if (old.score != comment.score)
+            changes.add(CommentTreeChange(SCORE_CHANGED, node, old))
+    }
+
+    private companion object {
+        /** The body of a comment after it's been deleted by its author or removed by a moderator */
+        private val REMOVED_BODIES = setOf("[deleted]", "[removed]")
+    }
 }
@@ -1,68 +1,129 @@
 package net.dean.jraw.tree
 
 import java.util.*
-import kotlin.coroutines.experimental.buildSequence
 
 object TreeTraverser {
-    fun traverse(root: CommentNode<*>, order: TreeTraversalOrder): Sequence<CommentNode<*>> {
+    fun traverse(root: CommentNode<*>, order: TreeTraversalOrder): Sequence<CommentNode<*>> =
+        Sequence { iterator(root, order) }
+
+    /** Like [traverse], but returns an Iterator instead of a Sequence */
+    fun iterator(root: CommentNode<*>, order: TreeTraversalOrder): Iterator<CommentNode<*>> {
         return when (order) {
-            TreeTraversalOrder.PRE_ORDER -> preOrder(root)
-            TreeTraversalOrder.POST_ORDER -> postOrder(root)
-            TreeTraversalOrder.BREADTH_FIRST -> breadthFirst(root)
+            TreeTraversalOrder.PRE_ORDER -> PreOrderIterator(root)
+            TreeTraversalOrder.POST_ORDER -> PostOrderIterator(root)
+            TreeTraversalOrder.BREADTH_FIRST -> BreadthFirstIterator(root)
         }
     }
 
-    private fun preOrder(base: CommentNode<*>): Sequence<CommentNode<*>> = buildSequence {
+    /**
+     * Walks the tree in pre-order, letting the [visitor] decide whether to go through the children of each node and
+     * whether to continue at all. Returns false if the visitor stopped the traversal early.
+     */
+    fun visit(root: CommentNode<*>, visitor: CommentVisitor): Boolean {
         val stack = ArrayDeque<CommentNode<*>>()
-        stack.add(base)
-
-        var root: CommentNode<*>
-        while (!stack.isEmpty()) {
-            root = stack.pop()
-            yield(root)
+        stack.push(root)
 
-            if (root.replies.isNotEmpty()) {
-                for (i in root.replies.size - 1 downTo 0) {
-                    stack.push(root.replies[i])
-                }
+        while (stack.isNotEmpty()) {
+            val node = stack.pop()
+            when (visitor.visit(node)) {
+                CommentVisitor.Result.CONTINUE -> pushReplies(stack, node)
+                CommentVisitor.Result.SKIP_SUBTREE -> {}
+                CommentVisitor.Result.STOP -> return false
             }
         }
+
+        return true
+    }
+
+    /** Pushes the replies of a node onto a stack so that the first reply is at the top */
+    private fun pushReplies(stack: ArrayDeque<CommentNode<*>>, node: CommentNode<*>) {
+        val replies = node.replies
+        for (i in replies.size - 1 downTo 0)
+            stack.push(replies[i])
+    }
+
+    /**
+     * The replies of each node are only looked at when the iterator moves past it, so replies that are loaded while the
+     * node is the current one (see [CommentNode.replaceMore]) are included.
+     */
+    private class PreOrderIterator(root: CommentNode<*>) : Iterator<CommentNode<*>> {
+        private val stack = ArrayDeque<CommentNode<*>>().apply { push(root) }
+        /** The node that was returned last, whose replies haven't been pushed yet */
+        private var pending: CommentNode<*>? = null
+
+        override fun hasNext(): Boolean {
+            expandPending()
+            return stack.isNotEmpty()
+        }
+
+        override fun next(): CommentNode<*> {
+            expandPending()
+            val node = stack.poll() ?: throw NoSuchElementException()
+            pending = node
+            return node
+        }
+
+        private fun expandPending() {
+            val node = pending ?: return
+            pending = null
+            pushReplies(stack, node)
+        }
     }
 
-    private fun postOrder(base: CommentNode<*>): Sequence<CommentNode<*>> = buildSequence {
-        // Post-order traversal isn't going to be as fast as the other methods, this traversal method discovers elements
-        // in reverse order and sorts them using a stack. Instead of finding the next node and yielding it, we find the
-        // entire sequence and yield all elements right then and there
-        val unvisited = ArrayDeque<CommentNode<*>>()
-        val visited = ArrayDeque<CommentNode<*>>()
-        unvisited.add(base)
-        var root: CommentNode<*>
-
-        while (unvisited.isNotEmpty()) {
-            root = unvisited.pop()
-            visited.push(root)
-
-            if (root.replies.isNotEmpty()) {
-                for (reply in root.replies) {
-                    unvisited.push(reply)
+    /**
+     * Returns each node after all of its children. Only the path from the root to the current node is kept in memory,
+     * along with how many children of each node on that path have been returned so far.
+     */
+    private class PostOrderIterator(root: CommentNode<*>) : Iterator<CommentNode<*>> {
+        private val path = ArrayDeque<CommentNode<*>>().apply { push(root) }
+        private var childIndexes = IntArray(16)
+
+        override fun hasNext() = path.isNotEmpty()
+
+        override fun next(): CommentNode<*> {
+            if (path.isEmpty()) throw NoSuchElementException()
+
+            // Go down the leftmost unvisited branch until we reach a node whose children have all been returned
+            while (true) {
+                val node = path.peek()
+                val depth = path.size - 1
+                val childIndex = childIndexes[depth]
+
+                if (childIndex >= node.replies.size) {
+                    path.pop()
+                    // The parent can move on to its next child
+                    if (depth > 0) childIndexes[depth - 1]++
+                    return node
                 }
+
+                path.push(node.replies[childIndex])
+                if (path.size > childIndexes.size) childIndexes = childIndexes.copyOf(childIndexes.size * 2)
+                childIndexes[path.size - 1] = 0
             }
         }
-
-        yieldAll(visited)
     }
 
-    private fun breadthFirst(base: CommentNode<*>): Sequence<CommentNode<*>> = buildSequence {
-        val queue = ArrayDeque<CommentNode<*>>()
-        var node: CommentNode<*>
+    /** Like [PreOrderIterator], this only adds the replies of a node to the queue once the iterator moves past it */
+    private class BreadthFirstIterator(root: CommentNode<*>) : Iterator<CommentNode<*>> {
+        private val queue = ArrayDeque<CommentNode<*>>().apply { add(root) }
+        private var pending: CommentNode<*>? = null
 
-        queue.add(base)
+        override fun hasNext(): Boolean {
+            expandPending()
+            return queue.isNotEmpty()
+        }
 
-        while (queue.isNotEmpty()) {
-            node = queue.remove()
-            yield(node)
+        override fun next(): CommentNode<*> {
+            expandPending()
+            val node = queue.poll() ?: throw NoSuchElementException()
+            pending = node
+            return node
+        }
 
-            queue += node.replies
+        private fun expandPending() {
+            val node = pending ?: return
+            pending = null
+            queue.addAll(node.replies)
         }
     }
 }
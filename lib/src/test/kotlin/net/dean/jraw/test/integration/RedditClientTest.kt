@@ -1,20 +1,26 @@
 package net.dean.jraw.test.integration
 
 import com.winterbe.expekt.should
+import net.dean.jraw.ApiException
 import net.dean.jraw.RedditClient
-import net.dean.jraw.http.HttpRequest
-import net.dean.jraw.http.NetworkException
-import net.dean.jraw.http.SimpleHttpLogger
+import net.dean.jraw.http.*
 import net.dean.jraw.models.*
 import net.dean.jraw.oauth.OAuthHelper
 import net.dean.jraw.pagination.Paginator
+import net.dean.jraw.ratelimit.AbstractRateLimiter
+import net.dean.jraw.ratelimit.RateLimitStatus
+import net.dean.jraw.ratelimit.ResponseAwareRateLimiter
 import net.dean.jraw.test.*
 import net.dean.jraw.test.TestConfig.reddit
 import okhttp3.HttpUrl
+import okhttp3.mockwebserver.MockResponse
 import org.jetbrains.spek.api.Spek
 import org.jetbrains.spek.api.dsl.describe
 import org.jetbrains.spek.api.dsl.it
+import java.io.IOException
 import java.util.*
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
 import kotlin.properties.Delegates
 
 class RedditClientTest : Spek({
@@ -131,6 +137,123 @@ class RedditClientTest : Spek({
         }
     }
 
+    describe("retryPolicy") {
+        var httpAdapter: MockNetworkAdapter by Delegates.notNull()
+
+        beforeEachTest {
+            httpAdapter = MockNetworkAdapter()
+            httpAdapter.start()
+        }
+
+        it("should retry 429 responses and report how long it waited") {
+            httpAdapter.enqueue(MockHttpResponse(code = 429))
+            httpAdapter.enqueue(MockHttpResponse(code = 503))
+            httpAdapter.enqueue("""{"foo":"bar"}""")
+
+            val reddit = newMockRedditClient(httpAdapter)
+            val delays = mutableListOf<Long>()
+            reddit.retryListener = object : RetryListener {
+                override fun onRetry(r: HttpRequest, attempt: Int, delay: Long, res: HttpResponse?, error: IOException?) {
+                    attempt.should.equal(delays.size + 1)
+                    delays.add(delay)
+                }
+            }
+
+            reddit.request { it.url(httpAdapter.mockServer.url("/").toString()) }.code.should.equal(200)
+            delays.should.have.size(2)
+            httpAdapter.mockServer.requestCount.should.equal(3)
+        }
+
+        it("should not retry when the policy says not to") {
+            httpAdapter.enqueue(MockHttpResponse(code = 500))
+            val reddit = newMockRedditClient(httpAdapter)
+            reddit.retryPolicy = object : RetryPolicy {
+                override fun retryDelay(req: HttpRequest, attempt: Int, previousDelay: Long, res: HttpResponse?,
+                                        error: IOException?) = -1L
+            }
+
+            expectException(NetworkException::class) {
+                reddit.request { it.url(httpAdapter.mockServer.url("/").toString()) }
+            }
+            httpAdapter.mockServer.requestCount.should.equal(1)
+        }
+
+        afterEachTest {
+            httpAdapter.reset()
+        }
+    }
+
+    describe("rateLimiter") {
+        it("should be updated with the rate limit reported in the response headers") {
+            val httpAdapter = MockNetworkAdapter()
+            httpAdapter.start()
+            httpAdapter.mockServer.enqueue(MockResponse()
+                .setBody("{}")
+                .setHeader("Content-Type", "application/json")
+                .setHeader("X-Ratelimit-Remaining", "123.0")
+                .setHeader("X-Ratelimit-Used", "477")
+                .setHeader("X-Ratelimit-Reset", "300"))
+
+            val reddit = newMockRedditClient(httpAdapter)
+            val statuses = mutableListOf<RateLimitStatus>()
+            reddit.rateLimiter = object : AbstractRateLimiter(), ResponseAwareRateLimiter {
+                override fun tryAcquire(permits: Long) = true
+                override fun refill(permits: Long) {}
+                override fun update(status: RateLimitStatus) { statuses.add(status) }
+            }
+
+            reddit.request { it.url(httpAdapter.mockServer.url("/").toString()) }
+            statuses.should.equal(listOf(RateLimitStatus(remaining = 123.0, used = 477, resetSeconds = 300)))
+            httpAdapter.reset()
+        }
+    }
+
+    describe("requestAsync") {
+        var httpAdapter: MockNetworkAdapter by Delegates.notNull()
+
+        beforeEachTest {
+            httpAdapter = MockNetworkAdapter()
+            httpAdapter.start()
+        }
+
+        it("should complete with the response") {
+            httpAdapter.enqueue("""{"foo":"bar"}""")
+            val reddit = newMockRedditClient(httpAdapter)
+
+            val res = reddit.requestAsync { it.url(httpAdapter.mockServer.url("/").toString()) }.get(10, TimeUnit.SECONDS)
+            res.code.should.equal(200)
+            res.body.should.equal("""{"foo":"bar"}""")
+        }
+
+        it("should retry 5XX errors and then complete exceptionally") {
+            val retryLimit = 2
+            for (i in 0..retryLimit)
+                httpAdapter.enqueue(MockHttpResponse(code = 500 + i))
+
+            val reddit = newMockRedditClient(httpAdapter)
+            reddit.retryLimit = retryLimit
+
+            val future = reddit.requestAsync { it.url(httpAdapter.mockServer.url("/").toString()) }
+            val ex = expectException(ExecutionException::class) { future.get(10, TimeUnit.SECONDS) }
+            ex.cause.should.be.instanceof(NetworkException::class.java)
+
+            httpAdapter.mockServer.requestCount.should.equal(retryLimit + 1)
+        }
+
+        it("should complete exceptionally when the response contains an API error") {
+            httpAdapter.enqueue("""{"json": {"errors": [["RATELIMIT", "you are doing that too much", "ratelimit"]]}}""")
+            val reddit = newMockRedditClient(httpAdapter)
+
+            val future = reddit.requestAsync { it.url(httpAdapter.mockServer.url("/").toString()) }
+            val ex = expectException(ExecutionException::class) { future.get(10, TimeUnit.SECONDS) }
+            ex.cause.should.be.instanceof(ApiException::class.java)
+        }
+
+        afterEachTest {
+            httpAdapter.reset()
+        }
+    }
+
     describe("autoRenew") {
         it("should request a new token when the old one has expired") {
             val reddit = OAuthHelper.automatic(newOkHttpAdapter(),  CredentialsUtil.script)
@@ -12,7 +12,9 @@ import okhttp3.*
 import okhttp3.mockwebserver.MockResponse
 import okhttp3.mockwebserver.MockWebServer
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 /** Creates a totally BS OAuthData object */
 fun createMockOAuthData(includeRefreshToken: Boolean = false) = OAuthData.create(
@@ -36,6 +38,8 @@ fun createMockCredentials(type: AuthMethod) = when (type) {
 fun newMockRedditClient(adapter: NetworkAdapter): RedditClient {
     val r = RedditClient(adapter, createMockOAuthData(), createMockCredentials(AuthMethod.SCRIPT), InMemoryTokenStore(), overrideUsername = "<mock>")
     r.rateLimiter = NoopRateLimiter()
+    // Retry almost immediately so tests don't have to wait
+    r.retryPolicy = ExponentialBackoffRetryPolicy(baseDelay = 1, maxDelay = 10)
     return r
 }
 
@@ -151,3 +155,172 @@ class InMemoryLogAdapter : LogAdapter {
     fun reset() { data.clear() }
 
 }
+
+/**
+ * Creates the JSON for a page of a Listing of WikiRevisions, which are some of the simplest models that can be
+ * paginated. Each item's ID is one of [ids].
+ */
+fun mockListing(after: String?, vararg ids: String): String {
+    val children = ids.joinToString(",") {
+        """{"timestamp": 1500000000, "reason": null, "author": null, "page": "index", "id": "$it"}"""
+    }
+    val afterJson = if (after == null) "null" else "\"$after\""
+    return """{"kind": "Listing", "data": {"after": $afterJson, "children": [$children]}}"""
+}
+
+/**
+ * A NetworkAdapter that serves made up comment trees without sending any HTTP requests. Unless [inlineDepth] says
+ * otherwise, every comment's replies are hidden behind a MoreChildren, so every comment that gets loaded requires a
+ * request to the morechildren endpoint.
+ *
+ * Use [addThread] to create a submission before requesting its comments.
+ */
+class MockCommentsAdapter : NetworkAdapter {
+    override var userAgent: UserAgent = UserAgent("doesn't matter, no requests are going to be sent")
+
+    /** Maps the fullname of a submission or comment to the IDs of its direct replies */
+    private val replies: MutableMap<String, List<String>> = ConcurrentHashMap()
+    /** Maps the ID of a comment to the fullname of its parent */
+    private val parents: MutableMap<String, String> = ConcurrentHashMap()
+    private val inFlight = AtomicInteger()
+
+    /** Maps the ID of a comment to its score. Comments that aren't in here have a score of 1. */
+    val scores: MutableMap<String, Int> = ConcurrentHashMap()
+    /** Maps the ID of a comment to its body. Comments that aren't in here have "body of {id}" as their body. */
+    val bodies: MutableMap<String, String> = ConcurrentHashMap()
+
+    /** How deep the comments sent with the submission go. By default, only a MoreChildren is sent. */
+    var inlineDepth = 0
+
+    /**
+     * If a MoreChildren lists the IDs of every comment below its parent (in pre-order) instead of only the IDs of the
+     * direct replies, like reddit does for large threads
+     */
+    var listDescendants = false
+
+    /** The most amount of requests to the morechildren endpoint that have been in progress at the same time */
+    val maxConcurrentMoreChildren = AtomicInteger()
+
+    /** How many times the morechildren endpoint has been requested */
+    val moreChildrenRequests = AtomicInteger()
+
+    /** Called while a request to the morechildren endpoint is in progress */
+    var onMoreChildren: () -> Unit = {}
+
+    /**
+     * Creates a submission with [topLevel] comments. Every comment at depth `d` (starting at 1) has `replies[d - 1]`
+     * replies, or none if there is no such element. Returns the IDs of all comments in pre-order.
+     */
+    fun addThread(submissionId: String, topLevel: Int, vararg replies: Int): List<String> {
+        val ids = mutableListOf<String>()
+        fun create(parentFullName: String, prefix: String, count: Int, depth: Int) {
+            val children = (0 until count).map { prefix + "x" + it.toString(36) }
+            this.replies[parentFullName] = children
+            for (id in children) {
+                ids.add(id)
+                parents[id] = parentFullName
+                create("t1_$id", id, replies.getOrElse(depth - 1) { 0 }, depth + 1)
+            }
+        }
+        create("t3_$submissionId", submissionId, topLevel, depth = 1)
+        return ids
+    }
+
+    /** Adds a new comment without any replies after the existing replies to the given submission or comment */
+    fun addComment(parentFullName: String, id: String) {
+        replies[parentFullName] = (replies[parentFullName] ?: listOf()) + id
+        parents[id] = parentFullName
+    }
+
+    override fun connect(url: String, listener: WebSocketListener): WebSocket {
+        throw NotImplementedError()
+    }
+
+    override fun execute(r: HttpRequest): HttpResponse {
+        val url = HttpUrl.parse(r.url)!!
+        val path = url.encodedPath()
+
+        val json = when {
+            path == "/api/morechildren" -> moreChildren(url)
+            path.startsWith("/comments/") -> comments(path.substringAfter("/comments/"))
+            else -> throw IllegalArgumentException("Unexpected request: ${r.url}")
+        }
+
+        return HttpResponse(Response.Builder()
+            .request(Request.Builder().url(url).build())
+            .protocol(Protocol.HTTP_1_1)
+            .code(200)
+            .message("OK")
+            .body(ResponseBody.create(MediaType.parse("application/json"), json))
+            .build())
+    }
+
+    /**
+     * Creates the JSON that the comments endpoint would send for the given submission. Comments up to [inlineDepth]
+     * are included in the response, the replies to any comments below that are hidden behind a MoreChildren.
+     */
+    fun comments(submissionId: String): String =
+        "[${mockSubmissionListing(submissionId)}, ${mockReplies("t3_$submissionId", "t3_$submissionId", 1)}]"
+
+    private fun mockReplies(parentFullName: String, submissionFullName: String, depth: Int): String {
+        val children = replies[parentFullName] ?: listOf()
+        if (children.isEmpty()) return "\"\""
+
+        val things = if (depth > inlineDepth)
+            listOf(mockMoreChildren(parentFullName, if (listDescendants) descendants(parentFullName) else children))
+        else
+            children.map { mockComment(it, parentFullName, submissionFullName, mockReplies("t1_$it", submissionFullName, depth + 1)) }
+        return "{\"kind\": \"Listing\", \"data\": {\"after\": null, \"children\": [${things.joinToString(",")}]}}"
+    }
+
+    private fun moreChildren(url: HttpUrl): String {
+        val concurrent = inFlight.incrementAndGet()
+        try {
+            maxConcurrentMoreChildren.accumulateAndGet(concurrent, Math::max)
+            moreChildrenRequests.incrementAndGet()
+            onMoreChildren()
+
+            val submissionFullName = url.queryParameter("link_id")!!
+            val things = url.queryParameter("children")!!.split(",").flatMap { id ->
+                val comment = mockComment(id, parents[id]!!, submissionFullName)
+                val children = replies["t1_$id"] ?: listOf()
+                // The replies are requested along with this comment if they were listed with it
+                if (children.isEmpty() || listDescendants) listOf(comment) else listOf(comment, mockMoreChildren("t1_$id", children))
+            }
+            return """{"json": {"errors": [], "data": {"things": [${things.joinToString(",")}]}}}"""
+        } finally {
+            inFlight.decrementAndGet()
+        }
+    }
+
+    private fun descendants(parentFullName: String): List<String> =
+        (replies[parentFullName] ?: listOf()).flatMap { listOf(it) + descendants("t1_$it") }
+
+    private fun mockComment(id: String, parentFullName: String, submissionFullName: String, replies: String = "\"\"") = """{"kind": "t1", "data": {
+        "archived": false, "author": "author_${id.last()}", "author_flair_text": null, "can_gild": true,
+        "controversiality": 0, "created_utc": 1500000000, "distinguished": null, "edited": null, "gilded": 0,
+        "gildings": {"gid_1": 0, "gid_2": 0, "gid_3": 0}, "name": "t1_$id", "id": "$id", "body": "${bodies[id] ?: "body of $id"}",
+        "replies": $replies, "parent_id": "$parentFullName", "link_id": "$submissionFullName", "saved": false,
+        "stickied": false, "score": ${scores[id] ?: 1}, "score_hidden": false, "likes": null, "subreddit": "pics",
+        "subreddit_id": "t5_2qh0u", "subreddit_type": "public"
+    }}"""
+
+    private fun mockMoreChildren(parentFullName: String, children: List<String>): String {
+        val id = "more" + parentFullName.substringAfter('_')
+        val childrenJson = children.joinToString(",") { "\"$it\"" }
+        return """{"kind": "more", "data": {"count": ${children.size}, "name": "t1_$id", "id": "$id",
+            "parent_id": "$parentFullName", "depth": 0, "children": [$childrenJson]}}"""
+    }
+
+    private fun mockSubmissionListing(id: String) = """{"kind": "Listing", "data": {"children": [{"kind": "t3", "data": {
+        "archived": false, "author": "author_$id", "author_flair_text": null, "can_gild": true, "contest_mode": false,
+        "created_utc": 1500000000, "distinguished": null, "domain": "self.pics", "edited": null, "secure_media": null,
+        "name": "t3_$id", "gilded": 0, "gildings": {"gid_1": 0, "gid_2": 0, "gid_3": 0}, "hidden": false,
+        "hide_score": false, "id": "$id", "is_self": true, "link_flair_text": null, "link_flair_css_class": null,
+        "locked": false, "over_18": false, "permalink": "/r/pics/comments/$id/", "post_hint": null, "preview": null,
+        "quarantine": false, "num_reports": null, "selftext": "", "spam": false, "spoiler": false, "subreddit": "pics",
+        "subreddit_id": "t5_2qh0u", "suggested_sort": null, "thumbnail": null, "title": "title of $id",
+        "url": "https://www.reddit.com/r/pics/comments/$id/", "visited": false, "removed": false, "likes": null,
+        "num_comments": 0, "saved": false, "stickied": false, "score": 1
+    }}]}}"""
+}
@@ -0,0 +1,67 @@
+package net.dean.jraw.test.perf
+
+import net.dean.jraw.JrawUtils
+import net.dean.jraw.http.HttpResponse
+import net.dean.jraw.models.internal.RedditExceptionStub
+import okhttp3.*
+import okio.Buffer
+import okio.Okio
+import okio.Source
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+
+/**
+ * Measures how long RedditClient takes to look for API errors in a JSON response before it's deserialized. Each
+ * response is read from a source, the way it would be read from the network.
+ */
+class ApiErrorSniffingBenchmark : Spek({
+    val stubAdapter = JrawUtils.adapter<RedditExceptionStub<*>>().lenient()
+    val valueAdapter = JrawUtils.moshi.adapter(Any::class.java)
+
+    fun response(body: String) = HttpResponse(Response.Builder()
+        .request(Request.Builder().url("https://oauth.reddit.com/").build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(200)
+        .message("OK")
+        .body(ResponseBody.create(MediaType.parse("application/json"), body.length.toLong(),
+            Okio.buffer(Buffer().writeUtf8(body) as Source)))
+        .build())
+
+    // Both around 730 KiB
+    val payloads = mapOf(
+        "Listing" to listingJson(1170),
+        "morechildren" to moreChildrenJson(1170)
+    )
+
+    /** How much of the body had to be loaded from the "network" to find out that there are no errors */
+    fun loadedKiB(json: String, sniff: (HttpResponse) -> Any?): Long {
+        val res = response(json)
+        sniff(res)
+        return res.raw.body()!!.source().buffer().size() / 1024
+    }
+
+    describe("sniffing API errors") {
+        for ((name, json) in payloads) {
+            it("$name (${json.length / 1024} KiB)") {
+                benchmark("$name: readJsonValue (how it used to be done)", 50) {
+                    valueAdapter.fromJson(response(json).peekBody(Long.MAX_VALUE))
+                }
+                benchmark("$name: peekBody(Long.MAX_VALUE) + stub adapter", 50) {
+                    stubAdapter.fromJson(response(json).peekBody(Long.MAX_VALUE))
+                }
+                benchmark("$name: peekSource() + stub adapter", 50) {
+                    stubAdapter.fromJson(response(json).peekSource())
+                }
+                benchmark("$name: deserializing the whole response, for comparison", 50) {
+                    response(json).deserializeWith(valueAdapter)
+                }
+                benchmark("$name: only creating the response", 50) { response(json) }
+
+                println("$name: KiB loaded with peekBody(Long.MAX_VALUE): " +
+                    loadedKiB(json) { stubAdapter.fromJson(it.peekBody(Long.MAX_VALUE)) })
+                println("$name: KiB loaded with peekSource(): " + loadedKiB(json) { stubAdapter.fromJson(it.peekSource()) })
+            }
+        }
+    }
+})
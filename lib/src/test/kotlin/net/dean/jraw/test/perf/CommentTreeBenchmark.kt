@@ -0,0 +1,56 @@
+package net.dean.jraw.test.perf
+
+import net.dean.jraw.models.Comment
+import net.dean.jraw.models.Listing
+import net.dean.jraw.test.MockCommentsAdapter
+import net.dean.jraw.test.newMockRedditClient
+import net.dean.jraw.tree.RootCommentNode
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+
+/** Measures how comment trees with 100k comments are loaded, changed and searched */
+class CommentTreeBenchmark : Spek({
+    val adapter = MockCommentsAdapter()
+    // 1000 top-level comments with 10 replies each, which have 9 replies each: 101,000 comments
+    val ids = adapter.addThread("big", 1000, 10, 9)
+    val reddit = newMockRedditClient(adapter)
+
+    fun loadTree(): RootCommentNode = reddit.submission("big").comments().also { it.loadFully(reddit) }
+
+    describe("a tree with ${ids.size} comments") {
+        val tree = loadTree()
+        val comments = tree.walkTree().drop(1).map { it.subject as Comment }.toList()
+
+        it("loading it") {
+            // Includes creating and parsing the mock responses, about 1000 of them
+            benchmark("loadFully()", iterations = 3, warmup = 1) { loadTree() }
+        }
+
+        it("adding every comment to a single node") {
+            benchmark("addReply(), ${comments.size} new comments", iterations = 5) {
+                val root = RootCommentNode(tree.subject, Listing.empty(), tree.settings)
+                comments.forEach { root.addReply(it) }
+                root
+            }
+
+            val root = RootCommentNode(tree.subject, Listing.empty(), tree.settings)
+            comments.forEach { root.addReply(it) }
+            benchmark("addReply(), ${comments.size} duplicates", iterations = 5) {
+                comments.forEach { root.addReply(it) }
+                root
+            }
+        }
+
+        it("finding comments") {
+            val sample = comments.filterIndexed { i, _ -> i % 100 == 0 }.map { it.fullName }
+
+            benchmark("findByFullName(), ${sample.size} comments", iterations = 20) {
+                sample.map { tree.findByFullName(it) }
+            }
+            benchmark("walkTree().find(), ${sample.size} comments", iterations = 3, warmup = 1) {
+                sample.map { fullName -> tree.walkTree().find { it.subject.fullName == fullName } }
+            }
+        }
+    }
+})
@@ -0,0 +1,69 @@
+package net.dean.jraw.test.perf
+
+import com.squareup.moshi.JsonReader
+import net.dean.jraw.test.MockCommentsAdapter
+import net.dean.jraw.tree.CommentTreeParser
+import net.dean.jraw.tree.CommentTreeSnapshot
+import okio.Buffer
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import java.io.*
+
+/**
+ * Compares reloading a comment tree from a [CommentTreeSnapshot] with parsing the JSON reddit sent for it again and
+ * with Java serialization
+ */
+class CommentTreeSnapshotBenchmark : Spek({
+    val adapter = MockCommentsAdapter()
+    adapter.inlineDepth = 3
+    // 200 top-level comments with 10 replies each, which have 9 replies each: 20,200 comments, all in one response
+    val ids = adapter.addThread("snap", 200, 10, 9)
+    val json = adapter.comments("snap")
+
+    fun parse() = CommentTreeParser.parse(JsonReader.of(Buffer().writeUtf8(json)), null)
+    val tree = parse()
+
+    val snapshot = Buffer().also { CommentTreeSnapshot.write(tree, it) }.readByteArray()
+    val serialized = ByteArrayOutputStream().also { out ->
+        ObjectOutputStream(out).use { stream -> for (node in tree.walkTree()) stream.writeObject(node.subject) }
+    }.toByteArray()
+
+    describe("a tree with ${ids.size} comments") {
+        it("sizes") {
+            println("JSON: ${json.length / 1024} KiB")
+            println("Snapshot: ${snapshot.size / 1024} KiB")
+            println("Java serialization of the models: ${serialized.size / 1024} KiB")
+        }
+
+        it("in memory") {
+            benchmark("parsing the JSON", iterations = 10) { parse() }
+            benchmark("CommentTreeSnapshot.write()", iterations = 10) {
+                Buffer().also { CommentTreeSnapshot.write(tree, it) }
+            }
+            benchmark("CommentTreeSnapshot.read()", iterations = 10) {
+                CommentTreeSnapshot.read(Buffer().write(snapshot))
+            }
+            benchmark("Java serialization, writing the models", iterations = 10) {
+                ObjectOutputStream(ByteArrayOutputStream()).use { stream ->
+                    for (node in tree.walkTree()) stream.writeObject(node.subject)
+                }
+            }
+            benchmark("Java serialization, reading the models", iterations = 10) {
+                ObjectInputStream(ByteArrayInputStream(serialized)).use { stream ->
+                    (0..ids.size).map { stream.readObject() }
+                }
+            }
+        }
+
+        it("from disk") {
+            val file = File.createTempFile("jraw-benchmark", ".snapshot")
+            try {
+                benchmark("CommentTreeSnapshot.write(File)", iterations = 10) { CommentTreeSnapshot.write(tree, file) }
+                benchmark("CommentTreeSnapshot.read(File)", iterations = 10) { CommentTreeSnapshot.read(file) }
+            } finally {
+                file.delete()
+            }
+        }
+    }
+})
@@ -0,0 +1,57 @@
+package net.dean.jraw.test.perf
+
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.Moshi
+import com.squareup.moshi.Types
+import net.dean.jraw.JrawUtils
+import net.dean.jraw.databind.Enveloped
+import net.dean.jraw.databind.LazyModelAdapterFactory
+import net.dean.jraw.models.Listing
+import net.dean.jraw.models.Submission
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+
+/** Compares decoding submissions with and without [LazyModelAdapterFactory] */
+class LazyDecodingBenchmark : Spek({
+    val type = Types.newParameterizedType(Listing::class.java, Submission::class.java)
+    val eager: JsonAdapter<Listing<Submission>> = JrawUtils.moshi.adapter(type, Enveloped::class.java)
+    val lazy: JsonAdapter<Listing<Submission>> = JrawUtils.addAdapters(Moshi.Builder().add(LazyModelAdapterFactory()))
+        .build().adapter(type, Enveloped::class.java)
+
+    /** A submission with a 7-image preview and a video, like most image and video posts */
+    fun submissionJson(id: String): String {
+        val image = """{"url": "https://i.redd.it/$id.png?width=640&amp;s=0123456789abcdef", "width": 640,
+            "height": 480}"""
+        val preview = """{"images": [{"id": "$id", "source": $image,
+            "resolutions": [${List(6) { image }.joinToString(",")}], "variants": {}}], "enabled": true}"""
+        val media = """{"reddit_video": {"fallback_url": "https://v.redd.it/$id/DASH_720", "height": 720,
+            "width": 1280, "scrubber_media_url": "https://v.redd.it/$id/DASH_240",
+            "dash_url": "https://v.redd.it/$id/dash", "duration": 42, "hls_url": "https://v.redd.it/$id/hls",
+            "is_gif": false, "transcoding_status": "completed"}}"""
+        return """{"kind": "t3", "data": {
+            "archived": false, "author": "author", "author_flair_text": null, "can_gild": true, "contest_mode": false,
+            "created_utc": 1500000000, "distinguished": null, "domain": "v.redd.it", "edited": null,
+            "secure_media": $media, "name": "t3_$id", "gilded": 0, "gildings": {"gid_1": 0, "gid_2": 0, "gid_3": 0},
+            "hidden": false, "hide_score": false, "id": "$id", "is_self": false, "link_flair_text": null,
+            "link_flair_css_class": null, "locked": false, "over_18": false, "permalink": "/r/pics/comments/$id/",
+            "post_hint": "hosted:video", "preview": $preview, "quarantine": false, "num_reports": null, "selftext": "",
+            "spam": false, "spoiler": false, "subreddit": "pics", "subreddit_id": "t5_2qh0u", "suggested_sort": null,
+            "thumbnail": null, "title": "title", "url": "https://v.redd.it/$id", "visited": false, "removed": false,
+            "likes": null, "num_comments": 0, "saved": false, "stickied": false, "score": 1
+        }}"""
+    }
+
+    val json = """{"kind": "Listing", "data": {"after": null, "children": [${
+        (0 until 100).joinToString(",") { submissionJson(it.toString(36)) }}]}}"""
+
+    describe("decoding Listing<Submission>") {
+        it("100 submissions with previews and videos (${json.length / 1024} KiB)") {
+            benchmark("eager", iterations = 1000) { eager.fromJson(json) }
+            benchmark("LazyModelAdapterFactory", iterations = 1000) { lazy.fromJson(json) }
+            benchmark("LazyModelAdapterFactory, then every preview and video", iterations = 1000) {
+                lazy.fromJson(json)!!.map { it.preview!!.images.size + it.embeddedMedia!!.redditVideo!!.width }
+            }
+        }
+    }
+})
@@ -0,0 +1,59 @@
+package net.dean.jraw.test.perf
+
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.Types
+import net.dean.jraw.JrawUtils
+import net.dean.jraw.databind.Enveloped
+import net.dean.jraw.models.Listing
+import net.dean.jraw.models.NestedIdentifiable
+import net.dean.jraw.test.MockCommentsAdapter
+import okio.Buffer
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+
+/** Measures how fast enveloped Listings of comments are decoded */
+class ListingDecodingBenchmark : Spek({
+    val adapter: JsonAdapter<Listing<NestedIdentifiable>> = JrawUtils.moshi.adapter(
+        Types.newParameterizedType(Listing::class.java, NestedIdentifiable::class.java), Enveloped::class.java)
+
+    /** Decodes the Listing with [adapter]. The whole Listing is read into a Map first if [buffered] is true. */
+    fun decode(reader: JsonReader, buffered: Boolean): Listing<NestedIdentifiable> =
+        if (buffered) adapter.fromJsonValue(reader.readJsonValue())!! else adapter.fromJson(reader)!!
+
+    /** Decodes the replies in a response from the comments endpoint, skipping the submission */
+    fun decodeReplies(json: String, buffered: Boolean): Listing<NestedIdentifiable> {
+        val reader = JsonReader.of(Buffer().writeUtf8(json))
+        reader.beginArray()
+        reader.skipValue()
+        return decode(reader, buffered).also { reader.endArray() }
+    }
+
+    val flat = listingJson(1000)
+
+    val mock = MockCommentsAdapter()
+    mock.inlineDepth = 3
+    // 20,200 comments, nested three levels deep
+    mock.addThread("nested", 200, 10, 9)
+    val nested = mock.comments("nested")
+
+    describe("decoding Listing<NestedIdentifiable>") {
+        // The whole value used to be read into a Map and then decoded from it. The Map path is measured for comparison.
+        it("1000 comments without replies (${flat.length / 1024} KiB)") {
+            benchmark("1000 comments: streaming", iterations = 50) {
+                decode(JsonReader.of(Buffer().writeUtf8(flat)), buffered = false)
+            }
+            benchmark("1000 comments: readJsonValue() + fromJsonValue()", iterations = 50) {
+                decode(JsonReader.of(Buffer().writeUtf8(flat)), buffered = true)
+            }
+        }
+
+        it("20,200 nested comments (${nested.length / 1024} KiB)") {
+            benchmark("20,200 comments: streaming", iterations = 10) { decodeReplies(nested, buffered = false) }
+            benchmark("20,200 comments: readJsonValue() + fromJsonValue()", iterations = 10) {
+                decodeReplies(nested, buffered = true)
+            }
+        }
+    }
+})
@@ -0,0 +1,65 @@
+package net.dean.jraw.test.perf
+
+import net.dean.jraw.ratelimit.LeakyBucketRateLimiter
+import net.dean.jraw.ratelimit.LockFreeRateLimiter
+import net.dean.jraw.ratelimit.RateLimiter
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+/**
+ * Compares how long tryAcquire() takes for [LockFreeRateLimiter] and [LeakyBucketRateLimiter] under contention.
+ * LeakyBucketRateLimiter.tryAcquire() isn't thread-safe, so it's called while holding a lock, which is what
+ * AbstractRateLimiter.acquire() does for it. Run this on a machine with several cores, otherwise the threads never
+ * actually contend.
+ */
+class RateLimiterBenchmark : Spek({
+    val callsPerThread = 100_000
+
+    /** Calls [tryAcquire] [callsPerThread] times on [threads] threads at once. Returns how many permits were granted. */
+    fun hammer(tryAcquire: () -> Boolean, threads: Int): Int {
+        val barrier = CyclicBarrier(threads)
+        val granted = IntArray(threads)
+        (0 until threads).map { i ->
+            thread {
+                barrier.await()
+                for (j in 0 until callsPerThread)
+                    if (tryAcquire()) granted[i]++
+            }
+        }.forEach { it.join() }
+        return granted.sum()
+    }
+
+    fun synchronizedTryAcquire(limiter: RateLimiter): () -> Boolean = { synchronized(limiter) { limiter.tryAcquire() } }
+
+    val limiters = mapOf<String, (Long, Long, TimeUnit) -> () -> Boolean>(
+        "LeakyBucketRateLimiter (locked)" to { capacity, permits, unit ->
+            synchronizedTryAcquire(LeakyBucketRateLimiter(capacity, permits, unit))
+        },
+        "LockFreeRateLimiter" to { capacity, permits, unit ->
+            val limiter = LockFreeRateLimiter(capacity, permits, unit)
+            ({ limiter.tryAcquire() })
+        }
+    )
+
+    println("Available processors: ${Runtime.getRuntime().availableProcessors()}")
+
+    describe("tryAcquire") {
+        for (threads in listOf(1, 4, 16)) {
+            it("$threads thread(s), $callsPerThread calls each") {
+                for ((name, create) in limiters) {
+                    // Almost every call is granted, so the bucket is changed all the time
+                    val busy = create(Long.MAX_VALUE / 2, 1_000_000_000, TimeUnit.MILLISECONDS)
+                    benchmark("$name, $threads thread(s), mostly granted", 10) { hammer(busy, threads) }
+
+                    // reddit's actual limit. Almost every call is denied, which is what happens while a client waits.
+                    val reddit = create(5, 60, TimeUnit.MINUTES)
+                    benchmark("$name, $threads thread(s), mostly denied", 10) { hammer(reddit, threads) }
+                }
+            }
+        }
+    }
+})
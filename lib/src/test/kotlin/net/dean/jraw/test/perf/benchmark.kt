@@ -0,0 +1,39 @@
+package net.dean.jraw.test.perf
+
+/** Keeps the JIT from throwing away the work done by a benchmark */
+@Volatile private var blackhole: Any? = null
+
+/**
+ * Calls [block] [warmup] times so the JIT can do its thing, then [iterations] more times, and prints how long one call
+ * took on average. Returns that time in milliseconds.
+ */
+fun benchmark(name: String, iterations: Int, warmup: Int = iterations, block: () -> Any?): Double {
+    repeat(warmup) { blackhole = block() }
+
+    val start = System.nanoTime()
+    repeat(iterations) { blackhole = block() }
+    val ms = (System.nanoTime() - start) / 1_000_000.0 / iterations
+
+    println(String.format("%-60s %10.3f ms/op", name, ms))
+    return ms
+}
+
+/** A comment with the properties reddit usually sends */
+fun commentJson(id: String, parentFullName: String = "t3_abc") = """{"kind": "t1", "data": {
+    "archived": false, "author": "author_${id.last()}", "author_flair_text": null, "can_gild": true,
+    "controversiality": 0, "created_utc": 1500000000, "distinguished": null, "edited": null, "gilded": 0,
+    "gildings": {"gid_1": 0, "gid_2": 0, "gid_3": 0}, "name": "t1_$id", "id": "$id",
+    "body": "This is the body of comment $id. It's about as long as a typical comment on reddit is.",
+    "replies": "", "parent_id": "$parentFullName", "link_id": "t3_abc", "saved": false, "stickied": false,
+    "score": 1, "score_hidden": false, "likes": null, "subreddit": "pics", "subreddit_id": "t5_2qh0u",
+    "subreddit_type": "public"
+}}"""
+
+/** A Listing like the ones reddit sends, with [count] comments */
+fun listingJson(count: Int) =
+    """{"kind": "Listing", "data": {"after": null, "before": null, "children": [${comments(count)}]}}"""
+
+/** A response like the one the morechildren endpoint sends, with [count] comments */
+fun moreChildrenJson(count: Int) = """{"json": {"errors": [], "data": {"things": [${comments(count)}]}}}"""
+
+private fun comments(count: Int) = (0 until count).joinToString(",") { commentJson(it.toString(36)) }
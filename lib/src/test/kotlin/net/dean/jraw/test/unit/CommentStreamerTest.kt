@@ -0,0 +1,111 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.RedditClient
+import net.dean.jraw.models.Comment
+import net.dean.jraw.models.CommentSort
+import net.dean.jraw.test.MockCommentsAdapter
+import net.dean.jraw.test.newMockRedditClient
+import net.dean.jraw.tree.AbstractCommentNode
+import net.dean.jraw.tree.CommentListener
+import net.dean.jraw.tree.CommentNode.Companion.NO_LIMIT
+import net.dean.jraw.tree.CommentStreamer
+import net.dean.jraw.tree.CommentTreeSettings
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import kotlin.properties.Delegates
+
+class CommentStreamerTest : Spek({
+    var adapter: MockCommentsAdapter by Delegates.notNull()
+    var reddit: RedditClient by Delegates.notNull()
+
+    /** Streams the comments of a submission and returns the ID and depth of each one, in the order they were received */
+    fun stream(id: String, depthLimit: Int = NO_LIMIT, requestLimit: Int = NO_LIMIT): List<Pair<String, Int>> {
+        val received = mutableListOf<Pair<String, Int>>()
+        reddit.submission(id).streamComments(object : CommentListener {
+            override fun onComment(comment: Comment, depth: Int) {
+                received.add(comment.id to depth)
+            }
+        }, depthLimit = depthLimit, requestLimit = requestLimit).id.should.equal(id)
+        return received
+    }
+
+    fun tree(id: String, depthLimit: Int = NO_LIMIT): List<Pair<String, Int>> {
+        val tree = reddit.submission(id).comments()
+        tree.loadFully(reddit, depthLimit)
+        return tree.walkTree().drop(1).map { it.subject.id to it.depth }.toList()
+    }
+
+    beforeEachTest {
+        adapter = MockCommentsAdapter()
+        reddit = newMockRedditClient(adapter)
+    }
+
+    describe("streamComments") {
+        it("should find the same comments as loadFully") {
+            adapter.addThread("a", 30, 3, 2)
+            stream("a").sortedBy { it.first }.should.equal(tree("a").sortedBy { it.first })
+        }
+
+        it("should include comments sent with the submission") {
+            adapter.inlineDepth = 2
+            adapter.addThread("b", 5, 2, 2)
+            stream("b").sortedBy { it.first }.should.equal(tree("b").sortedBy { it.first })
+        }
+
+        it("should pass comments on before the whole thread has been loaded") {
+            adapter.addThread("c", 150, 1)
+            val requestsAtFirstComment = mutableListOf<Int>()
+            reddit.submission("c").streamComments(object : CommentListener {
+                override fun onComment(comment: Comment, depth: Int) {
+                    if (requestsAtFirstComment.isEmpty()) requestsAtFirstComment.add(adapter.moreChildrenRequests.get())
+                }
+            })
+
+            requestsAtFirstComment.should.equal(listOf(1))
+            adapter.moreChildrenRequests.get().should.be.above(1)
+        }
+
+        it("should find the parents of comments that were loaded by an earlier request") {
+            // 120 IDs in one MoreChildren, so the first request stops in the middle of the replies to a comment
+            adapter.listDescendants = true
+            adapter.addThread("f", 40, 1, 1)
+            stream("f").sortedBy { it.first }.should.equal(tree("f").sortedBy { it.first })
+            adapter.moreChildrenRequests.get().should.equal(2 * 2)
+        }
+
+        it("should only keep the depths of comments that can still get replies") {
+            // 1500 IDs in one MoreChildren, which takes 15 requests
+            adapter.listDescendants = true
+            val ids = adapter.addThread("g", 300, 2, 1)
+
+            var streamer: CommentStreamer by Delegates.notNull()
+            var maxKnown = 0
+            val received = mutableListOf<Pair<String, Int>>()
+            streamer = CommentStreamer(reddit, CommentTreeSettings("g", CommentSort.CONFIDENCE), NO_LIMIT, NO_LIMIT,
+                object : CommentListener {
+                    override fun onComment(comment: Comment, depth: Int) {
+                        received.add(comment.id to depth)
+                        maxKnown = maxOf(maxKnown, streamer.knownCount)
+                    }
+                })
+            streamer.run()
+
+            received.size.should.equal(ids.size)
+            received.sortedBy { it.first }.should.equal(tree("g").sortedBy { it.first })
+            maxKnown.should.be.below(2 * AbstractCommentNode.MORE_CHILDREN_LIMIT + 3)
+        }
+
+        it("should respect the depth limit") {
+            adapter.addThread("d", 5, 2, 2)
+            stream("d", depthLimit = 1).sortedBy { it.first }.should.equal(tree("d", depthLimit = 1).sortedBy { it.first })
+        }
+
+        it("should respect the request limit") {
+            adapter.addThread("e", 150, 1)
+            stream("e", requestLimit = 1).size.should.equal(100)
+            adapter.moreChildrenRequests.get().should.equal(1)
+        }
+    }
+})
@@ -0,0 +1,88 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.RedditClient
+import net.dean.jraw.tree.CommentNode
+import net.dean.jraw.tree.CommentTreeLoader
+import net.dean.jraw.tree.RootCommentNode
+import net.dean.jraw.test.MockCommentsAdapter
+import net.dean.jraw.test.expectException
+import net.dean.jraw.test.newMockRedditClient
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.it
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.properties.Delegates
+
+class CommentTreeLoaderTest : Spek({
+    val submissionIds = listOf("a", "b", "c", "d")
+    var adapters: List<MockCommentsAdapter> by Delegates.notNull()
+    var clients: List<RedditClient> by Delegates.notNull()
+    var expected: Map<String, List<String>> by Delegates.notNull()
+
+    fun trees(reddit: RedditClient = clients[0]): List<RootCommentNode> =
+        submissionIds.map { reddit.submission(it).comments() }
+
+    fun ids(tree: CommentNode<*>) = tree.walkTree().drop(1).map { it.subject.id }.toList()
+
+    beforeEachTest {
+        adapters = listOf(MockCommentsAdapter(), MockCommentsAdapter())
+        // Every adapter serves the same threads
+        for (adapter in adapters)
+            expected = submissionIds.associate { it to adapter.addThread(it, 20, 3, 2) }
+        clients = adapters.map { newMockRedditClient(it) }
+    }
+
+    it("should fully expand every tree") {
+        val trees = trees()
+        CommentTreeLoader.loadFully(trees, clients)
+
+        for ((id, tree) in submissionIds.zip(trees)) {
+            ids(tree).should.equal(expected[id])
+            tree.walkTree().none { it.hasMoreChildren() }.should.be.`true`
+        }
+
+        // The work should have been shared between the clients
+        adapters.forEach { it.moreChildrenRequests.get().should.be.above(0) }
+    }
+
+    it("should expand trees in parallel with different clients") {
+        // Only returns true if both clients are in the middle of a morechildren request at the same time
+        val bothWaiting = CountDownLatch(adapters.size)
+        var parallel = true
+        for (adapter in adapters) {
+            adapter.onMoreChildren = {
+                bothWaiting.countDown()
+                if (!bothWaiting.await(5, TimeUnit.SECONDS)) parallel = false
+            }
+        }
+
+        CommentTreeLoader.loadFully(trees(), clients, depthLimit = 1)
+        parallel.should.be.`true`
+    }
+
+    it("should only send one morechildren request at a time for the same client") {
+        adapters[0].onMoreChildren = { Thread.sleep(5) }
+        val trees = trees()
+        val threads = trees.map { tree -> Thread { tree.loadFully(clients[0]) } }
+        threads.forEach { it.start() }
+        threads.forEach { it.join() }
+
+        adapters[0].maxConcurrentMoreChildren.get().should.equal(1)
+        for ((id, tree) in submissionIds.zip(trees))
+            ids(tree).should.equal(expected[id])
+    }
+
+    it("should rethrow the exception that stopped a tree from loading") {
+        adapters[1].onMoreChildren = { throw IllegalStateException("mock failure") }
+        expectException(IllegalStateException::class) {
+            CommentTreeLoader.loadFully(trees(), clients)
+        }.message.should.equal("mock failure")
+    }
+
+    it("should require at least one client") {
+        expectException(IllegalArgumentException::class) {
+            CommentTreeLoader.loadFully(trees(), listOf())
+        }
+    }
+})
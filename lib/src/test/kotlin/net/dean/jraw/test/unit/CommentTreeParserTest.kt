@@ -0,0 +1,74 @@
+package net.dean.jraw.test.unit
+
+import com.squareup.moshi.JsonReader
+import com.winterbe.expekt.should
+import net.dean.jraw.JrawUtils
+import net.dean.jraw.models.Comment
+import net.dean.jraw.models.internal.SubmissionData
+import net.dean.jraw.test.MockCommentsAdapter
+import net.dean.jraw.test.newMockRedditClient
+import net.dean.jraw.tree.CommentNode
+import net.dean.jraw.tree.CommentTreeParser
+import net.dean.jraw.tree.RootCommentNode
+import okio.Buffer
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.it
+import kotlin.properties.Delegates
+
+class CommentTreeParserTest : Spek({
+    var adapter: MockCommentsAdapter by Delegates.notNull()
+    var expected: List<String> by Delegates.notNull()
+
+    fun parse(json: String) = CommentTreeParser.parse(JsonReader.of(Buffer().writeUtf8(json)), null)
+
+    /** Lists the fullname of every node, along with whether or not it has more children */
+    fun describe(tree: CommentNode<*>) =
+        tree.walkTree().map { it.subject.fullName + (if (it.hasMoreChildren()) "+" else "") }.toList()
+
+    beforeEachTest {
+        adapter = MockCommentsAdapter()
+        adapter.inlineDepth = 2
+        expected = adapter.addThread("a", 5, 3, 2)
+    }
+
+    it("should create the same tree as deserializing a SubmissionData") {
+        val json = adapter.comments("a")
+        val data = JrawUtils.adapter<SubmissionData>().fromJson(json)!!
+        val old = RootCommentNode(data.submissions[0], data.comments, null)
+
+        describe(parse(json)).should.equal(describe(old))
+    }
+
+    it("should fill in the replies of each comment like deserializing a SubmissionData does") {
+        val json = adapter.comments("a")
+        val data = JrawUtils.adapter<SubmissionData>().fromJson(json)!!
+        val old = RootCommentNode(data.submissions[0], data.comments, null).walkTree().drop(1)
+            .associate { it.subject.fullName to it.subject as Comment }
+
+        val tree = parse(json)
+        tree.totalSize().should.equal(5 + 5 * 3)
+        for (node in tree.walkTree().drop(1)) {
+            val comment = node.subject as Comment
+            comment.replies.should.equal(old[comment.fullName]!!.replies)
+            comment.replies.children.should.equal(old[comment.fullName]!!.replies.children)
+            comment.should.equal(old[comment.fullName])
+        }
+        tree.replies[0].subject.replies.size.should.equal(3)
+    }
+
+    it("should be used by SubmissionReference.comments()") {
+        val reddit = newMockRedditClient(adapter)
+        val tree = reddit.submission("a").comments()
+        tree.loadFully(reddit)
+        tree.walkTree().drop(1).map { it.subject.id }.toList().should.equal(expected)
+    }
+
+    it("should handle envelopes where the data comes before the kind") {
+        adapter.inlineDepth = 1
+        val json = adapter.comments("a")
+            .replace(Regex("\\{\"kind\": \"(t1|more)\", \"data\": (\\{[^{}]*(\\{[^{}]*\\}[^{}]*)?\\})\\}"),
+                "{\"data\": $2, \"kind\": \"$1\"}")
+        json.should.not.equal(adapter.comments("a"))
+        describe(parse(json)).should.equal(describe(parse(adapter.comments("a"))))
+    }
+})
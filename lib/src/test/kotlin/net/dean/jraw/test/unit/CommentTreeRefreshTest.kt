@@ -0,0 +1,82 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.RedditClient
+import net.dean.jraw.test.MockCommentsAdapter
+import net.dean.jraw.test.newMockRedditClient
+import net.dean.jraw.tree.CommentTreeChange
+import net.dean.jraw.tree.RootCommentNode
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import kotlin.properties.Delegates
+
+class CommentTreeRefreshTest : Spek({
+    var adapter: MockCommentsAdapter by Delegates.notNull()
+    var reddit: RedditClient by Delegates.notNull()
+    var tree: RootCommentNode by Delegates.notNull()
+    var ids: List<String> by Delegates.notNull()
+
+    fun changes(type: CommentTreeChange.Type) = tree.refresh(reddit).filter { it.type == type }
+
+    beforeEachTest {
+        adapter = MockCommentsAdapter()
+        adapter.inlineDepth = 2
+        ids = adapter.addThread("a", 3, 2)
+        reddit = newMockRedditClient(adapter)
+        tree = reddit.submission("a").comments()
+    }
+
+    describe("refresh") {
+        it("should report nothing when nothing changed") {
+            tree.refresh(reddit).should.be.empty
+            tree.totalSize().should.equal(3 + 3 * 2)
+        }
+
+        it("should keep the existing nodes") {
+            val before = tree.walkTree().toList()
+            adapter.scores[ids[1]] = 10
+            tree.refresh(reddit)
+            tree.walkTree().toList().should.equal(before)
+        }
+
+        it("should add new comments") {
+            adapter.addComment("t1_${ids[0]}", "new")
+            val added = changes(CommentTreeChange.Type.ADDED)
+
+            added.map { it.node.subject.id }.should.equal(listOf("new"))
+            added[0].previous.should.be.`null`
+            tree.replies[0].replies.last().should.equal(added[0].node)
+            tree.findByFullName("t1_new").should.equal(added[0].node)
+            tree.totalSize().should.equal(3 + 3 * 2 + 1)
+        }
+
+        it("should report edited comments") {
+            adapter.bodies[ids[2]] = "edited body"
+            val edited = changes(CommentTreeChange.Type.EDITED)
+
+            edited.size.should.equal(1)
+            edited[0].previous!!.body.should.equal("body of ${ids[2]}")
+            edited[0].node.subject.body.should.equal("edited body")
+            tree.findByFullName("t1_${ids[2]}")!!.subject.body.should.equal("edited body")
+        }
+
+        it("should report removed comments without removing them from the tree") {
+            adapter.bodies[ids[0]] = "[removed]"
+            val removed = changes(CommentTreeChange.Type.REMOVED)
+
+            removed.map { it.node.subject.id }.should.equal(listOf(ids[0]))
+            tree.replies[0].subject.body.should.equal("[removed]")
+            tree.totalSize().should.equal(3 + 3 * 2)
+        }
+
+        it("should report score changes") {
+            adapter.scores[ids[3]] = 42
+            val changed = changes(CommentTreeChange.Type.SCORE_CHANGED)
+
+            changed.size.should.equal(1)
+            changed[0].previous!!.score.should.equal(1)
+            changed[0].node.subject.score.should.equal(42)
+        }
+    }
+})
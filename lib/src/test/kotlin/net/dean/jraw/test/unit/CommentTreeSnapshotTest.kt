@@ -0,0 +1,125 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.test.MockCommentsAdapter
+import net.dean.jraw.test.expectException
+import net.dean.jraw.test.newMockRedditClient
+import net.dean.jraw.tree.CommentNode
+import net.dean.jraw.tree.CommentTreeSnapshot
+import net.dean.jraw.tree.RootCommentNode
+import okio.Buffer
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.ObjectOutputStream
+import java.nio.channels.Channels
+import kotlin.properties.Delegates
+
+class CommentTreeSnapshotTest : Spek({
+    var tree: RootCommentNode by Delegates.notNull()
+
+    fun assertSameTree(actual: RootCommentNode, expected: RootCommentNode) {
+        actual.settings.should.equal(expected.settings)
+        actual.totalSize().should.equal(expected.totalSize())
+
+        for ((a, b) in actual.walkTree().zip(expected.walkTree())) {
+            a.subject.should.equal(b.subject)
+            a.depth.should.equal(b.depth)
+            a.moreChildren.should.equal(b.moreChildren)
+            a.replies.size.should.equal(b.replies.size)
+        }
+    }
+
+    beforeGroup {
+        val adapter = MockCommentsAdapter()
+        adapter.inlineDepth = 1
+        adapter.addThread("a", 40, 3, 2)
+        val reddit = newMockRedditClient(adapter)
+        tree = reddit.submission("a").comments()
+        // Leave some MoreChildren so that those get saved too
+        tree.loadFully(reddit, depthLimit = 1)
+    }
+
+    describe("write/read") {
+        it("should recreate the same tree") {
+            val buffer = Buffer()
+            CommentTreeSnapshot.write(tree, buffer)
+            val copy = CommentTreeSnapshot.read(buffer)
+
+            assertSameTree(copy, tree)
+            buffer.exhausted().should.be.`true`
+            // The new tree should be usable like any other
+            val last = tree.walkTree().last()
+            copy.findByFullName(last.subject.fullName)!!.subject.should.equal(last.subject)
+            copy.walkTree().any { it.hasMoreChildren() }.should.be.`true`
+        }
+
+        it("should work with files and channels") {
+            val file = File.createTempFile("jraw", ".snapshot")
+            try {
+                CommentTreeSnapshot.write(tree, file)
+                assertSameTree(CommentTreeSnapshot.read(file), tree)
+
+                val out = ByteArrayOutputStream()
+                CommentTreeSnapshot.write(tree, Channels.newChannel(out))
+                out.toByteArray().toList().should.equal(file.readBytes().toList())
+                assertSameTree(CommentTreeSnapshot.read(Channels.newChannel(out.toByteArray().inputStream())), tree)
+            } finally {
+                file.delete()
+            }
+        }
+
+        it("should keep unusual values") {
+            val adapter = MockCommentsAdapter()
+            adapter.addThread("u", 3)
+            adapter.scores["ux0"] = -5
+            adapter.scores["ux1"] = Int.MAX_VALUE
+            adapter.bodies["ux2"] = "caf\u00e9 \ud83d\ude00 " + "long ".repeat(20)
+            val reddit = newMockRedditClient(adapter)
+            val unusual = reddit.submission("u").comments()
+            unusual.loadFully(reddit)
+
+            val buffer = Buffer()
+            CommentTreeSnapshot.write(unusual, buffer)
+            assertSameTree(CommentTreeSnapshot.read(buffer), unusual)
+        }
+
+        it("should only read the snapshot from a BufferedSource") {
+            val buffer = Buffer()
+            CommentTreeSnapshot.write(tree, buffer)
+            buffer.writeUtf8("after the snapshot")
+            CommentTreeSnapshot.write(tree, buffer)
+
+            assertSameTree(CommentTreeSnapshot.read(buffer), tree)
+            buffer.readUtf8("after the snapshot".length.toLong()).should.equal("after the snapshot")
+            assertSameTree(CommentTreeSnapshot.read(buffer), tree)
+            buffer.exhausted().should.be.`true`
+        }
+
+        it("should be smaller than the same comments written with Java serialization") {
+            val buffer = Buffer()
+            CommentTreeSnapshot.write(tree, buffer)
+
+            val out = ByteArrayOutputStream()
+            ObjectOutputStream(out).use { stream ->
+                for (node in tree.walkTree()) stream.writeObject(node.subject)
+            }
+            buffer.size().should.be.below(out.size().toLong())
+        }
+
+        it("should reject data that isn't a snapshot") {
+            expectException(IllegalArgumentException::class) {
+                CommentTreeSnapshot.read(Buffer().writeUtf8("[{\"kind\": \"Listing\"}]"))
+            }
+        }
+
+        it("should reject snapshots from newer versions") {
+            val buffer = Buffer().writeInt(CommentTreeSnapshot.MAGIC).writeInt(CommentTreeSnapshot.VERSION + 1)
+            expectException(IllegalArgumentException::class) {
+                CommentTreeSnapshot.read(buffer)
+            }
+        }
+    }
+})
@@ -0,0 +1,61 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.test.MockCommentsAdapter
+import net.dean.jraw.test.newMockRedditClient
+import net.dean.jraw.tree.CompactCommentTree
+import net.dean.jraw.tree.RootCommentNode
+import net.dean.jraw.tree.TreeTraversalOrder
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import kotlin.properties.Delegates
+
+class CompactCommentTreeTest : Spek({
+    var tree: RootCommentNode by Delegates.notNull()
+    var compact: CompactCommentTree by Delegates.notNull()
+
+    beforeGroup {
+        val adapter = MockCommentsAdapter()
+        val reddit = newMockRedditClient(adapter)
+        adapter.addThread("a", 50, 4, 3)
+        tree = reddit.submission("a").comments()
+        // Leave the deepest comments unloaded
+        tree.loadFully(reddit, depthLimit = 2)
+        compact = CompactCommentTree.from(tree)
+    }
+
+    it("should copy every node") {
+        compact.size.should.equal(tree.totalSize() + 1)
+        compact.root.fullName.should.equal("t3_a")
+        compact.root.parent.should.be.`null`
+
+        for ((i, node) in tree.walkTree().withIndex()) {
+            val subject = node.subject
+            compact.fullName(i).should.equal(subject.fullName)
+            compact.author(i).should.equal(subject.author)
+            compact.body(i).should.equal(subject.body)
+            compact.score(i).should.equal(subject.score)
+            compact.created(i).should.equal(subject.created.time)
+            compact.depth(i).should.equal(node.depth)
+            compact.totalSize(i).should.equal(node.totalSize())
+            compact.hasMoreChildren(i).should.equal(node.hasMoreChildren())
+            compact.node(i).replies.map { it.fullName }.should.equal(node.replies.map { it.subject.fullName })
+            if (i > 0)
+                compact.node(i).parent!!.fullName.should.equal(node.parent.subject.fullName)
+        }
+    }
+
+    it("should only store each author once") {
+        compact.authorCount.should.equal(tree.walkTree().map { it.subject.author }.distinct().count())
+    }
+
+    describe("walkTree") {
+        for (order in TreeTraversalOrder.values()) {
+            it("should visit nodes in the same order as TreeTraverser for $order") {
+                compact.walkTree(order).map { it.fullName }.toList()
+                    .should.equal(tree.walkTree(order).map { it.subject.fullName }.toList())
+            }
+        }
+    }
+})
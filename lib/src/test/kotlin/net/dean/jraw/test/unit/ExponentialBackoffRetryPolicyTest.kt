@@ -0,0 +1,78 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.http.ExponentialBackoffRetryPolicy
+import net.dean.jraw.http.HttpRequest
+import net.dean.jraw.http.HttpResponse
+import net.dean.jraw.test.expectException
+import okhttp3.*
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import java.io.IOException
+import java.util.*
+
+class ExponentialBackoffRetryPolicyTest : Spek({
+    fun createResponse(code: Int, retryAfter: String? = null): HttpResponse {
+        val b = Response.Builder()
+            .request(Request.Builder().url("https://example.com").build())
+            .protocol(Protocol.HTTP_1_1)
+            .code(code)
+            .message("doesn't matter")
+        if (retryAfter != null) b.header("Retry-After", retryAfter)
+        return HttpResponse(b.build())
+    }
+
+    val policy = ExponentialBackoffRetryPolicy(baseDelay = 100, maxDelay = 10_000, random = Random(0))
+    val get = HttpRequest.Builder().url("https://example.com").build()
+    val post = HttpRequest.Builder().url("https://example.com").post(mapOf("text" to "hello")).build()
+
+    describe("retryDelay") {
+        it("should retry server errors, 429s, and IOExceptions") {
+            policy.retryDelay(get, 1, 0, createResponse(503), null).should.be.at.least(100)
+            policy.retryDelay(get, 1, 0, createResponse(429), null).should.be.at.least(100)
+            policy.retryDelay(get, 1, 0, null, IOException("connection reset")).should.be.at.least(100)
+        }
+
+        it("should only retry IOExceptions for idempotent methods") {
+            val error = IOException("read timed out")
+            for (method in listOf("GET", "HEAD", "PUT", "DELETE")) {
+                val req = HttpRequest.Builder().url("https://example.com").method(method).build()
+                policy.retryDelay(req, 1, 0, null, error).should.be.at.least(100)
+            }
+            policy.retryDelay(post, 1, 0, null, error).should.be.below(0)
+            policy.retryDelay(post, 1, 0, createResponse(503), null).should.be.at.least(100)
+
+            ExponentialBackoffRetryPolicy(baseDelay = 100, retryNonIdempotent = true)
+                .retryDelay(post, 1, 0, null, error).should.be.at.least(100)
+        }
+
+        it("should not retry anything else") {
+            for (code in listOf(200, 400, 401, 403, 404))
+                policy.retryDelay(get, 1, 0, createResponse(code), null).should.be.below(0)
+        }
+
+        it("should stay between baseDelay and three times the previous delay") {
+            var previous = 0L
+            for (attempt in 1..50) {
+                val delay = policy.retryDelay(get, attempt, previous, createResponse(500), null)
+                delay.should.be.within(100, Math.min(10_000, Math.max(100, previous) * 3))
+                previous = delay
+            }
+        }
+
+        it("should wait at least as long as Retry-After says") {
+            policy.retryDelay(get, 1, 0, createResponse(429, retryAfter = "5"), null).should.be.at.least(5000)
+        }
+
+        it("should give up when Retry-After is longer than maxDelay") {
+            policy.retryDelay(get, 1, 0, createResponse(503, retryAfter = "60"), null).should.be.below(0)
+        }
+    }
+
+    it("should require maxDelay to be at least baseDelay") {
+        expectException(IllegalArgumentException::class) {
+            ExponentialBackoffRetryPolicy(baseDelay = 10, maxDelay = 5)
+        }
+    }
+})
@@ -0,0 +1,82 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.http.HttpResponse
+import net.dean.jraw.test.expectException
+import okhttp3.*
+import okio.Buffer
+import okio.Okio
+import okio.Source
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+
+class HttpResponseTest : Spek({
+    fun createResponse(body: String) = HttpResponse(Response.Builder()
+        .request(Request.Builder().url("https://example.com").build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(200)
+        .message("OK")
+        .body(ResponseBody.create(MediaType.parse("application/json"), body))
+        .build())
+
+    describe("deserializeWith") {
+        it("should read straight from the source when the body hasn't been accessed") {
+            val res = createResponse("""{"foo":"bar"}""")
+            res.deserialize<Map<String, String>>().should.equal(mapOf("foo" to "bar"))
+
+            // The body was never turned into a String, so it's gone now
+            expectException(IllegalStateException::class) { res.body }
+        }
+
+        it("should use the body when it has already been accessed") {
+            val res = createResponse("""{"foo":"bar"}""")
+            res.body.should.equal("""{"foo":"bar"}""")
+            res.deserialize<Map<String, String>>().should.equal(mapOf("foo" to "bar"))
+            res.body.should.equal("""{"foo":"bar"}""")
+        }
+    }
+
+    describe("peekBody") {
+        it("should not consume the body") {
+            val res = createResponse("""{"foo":"bar"}""")
+            res.peekBody(4).readUtf8().should.equal("""{"fo""")
+            res.peekBody(Long.MAX_VALUE).readUtf8().should.equal("""{"foo":"bar"}""")
+            res.deserialize<Map<String, String>>().should.equal(mapOf("foo" to "bar"))
+        }
+
+        it("should work after the body has been accessed") {
+            val res = createResponse("""{"foo":"bar"}""")
+            res.body
+            res.peekBody(4).readUtf8().should.equal("""{"fo""")
+        }
+    }
+
+    describe("peekSource") {
+        it("should not consume the body") {
+            val res = createResponse("""{"foo":"bar"}""")
+            res.peekSource().readUtf8(4).should.equal("""{"fo""")
+            res.peekSource().readUtf8().should.equal("""{"foo":"bar"}""")
+            res.deserialize<Map<String, String>>().should.equal(mapOf("foo" to "bar"))
+        }
+
+        it("should only load what has been read") {
+            val body = """{"foo":"${"a".repeat(100_000)}"}"""
+            val res = HttpResponse(createResponse("").raw.newBuilder()
+                .body(ResponseBody.create(MediaType.parse("application/json"), body.length.toLong(),
+                    Okio.buffer(Buffer().writeUtf8(body) as Source)))
+                .build())
+
+            res.peekSource().readUtf8(9).should.equal("""{"foo":"a""")
+            res.raw.body()!!.source().buffer().size().should.be.below(body.length.toLong())
+            res.peekSource().readUtf8().should.equal(body)
+            res.body.should.equal(body)
+        }
+
+        it("should work after the body has been accessed") {
+            val res = createResponse("""{"foo":"bar"}""")
+            res.body
+            res.peekSource().readUtf8().should.equal("""{"foo":"bar"}""")
+        }
+    }
+})
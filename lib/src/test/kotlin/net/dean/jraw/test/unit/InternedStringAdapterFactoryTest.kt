@@ -0,0 +1,88 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.JrawUtils
+import net.dean.jraw.databind.Enveloped
+import net.dean.jraw.databind.InternedStringAdapterFactory
+import net.dean.jraw.databind.StringPool
+import net.dean.jraw.models.Submission
+import net.dean.jraw.test.expectException
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+
+class InternedStringAdapterFactoryTest : Spek({
+    val adapter = JrawUtils.adapter<Submission>(Enveloped::class.java)
+
+    fun submission(id: String) = adapter.fromJson("""{"kind": "t3", "data": {
+        "archived": false, "author": "some_author", "author_flair_text": null, "can_gild": true, "contest_mode": false,
+        "created_utc": 1500000000, "distinguished": null, "domain": "i.redd.it", "edited": null, "secure_media": null,
+        "name": "t3_$id", "gilded": 0, "gildings": {"gid_1": 0, "gid_2": 0, "gid_3": 0}, "hidden": false,
+        "hide_score": false, "id": "$id", "is_self": false, "link_flair_text": "Flair", "link_flair_css_class": null,
+        "locked": false, "over_18": false, "permalink": "/r/pics/comments/$id/", "post_hint": null, "preview": null,
+        "quarantine": false, "num_reports": null, "selftext": "", "spam": false, "spoiler": false, "subreddit": "pics",
+        "subreddit_id": "t5_2qh0u", "suggested_sort": null, "thumbnail": null, "title": "same title",
+        "url": "https://i.redd.it/$id.png", "visited": false, "removed": false, "likes": null, "num_comments": 0,
+        "saved": false, "stickied": false, "score": 1
+    }}""")!!
+
+    afterEachTest {
+        InternedStringAdapterFactory.pool = null
+    }
+
+    describe("InternedStringAdapterFactory") {
+        it("should not pool anything by default") {
+            submission("a").subreddit.should.not.be.identity(submission("b").subreddit)
+        }
+
+        it("should share annotated values when a pool is set") {
+            val pool = StringPool()
+            InternedStringAdapterFactory.pool = pool
+            val a = submission("a")
+            val b = submission("b")
+
+            a.subreddit.should.be.identity(b.subreddit)
+            a.subredditFullName.should.be.identity(b.subredditFullName)
+            a.author.should.be.identity(b.author)
+            a.domain.should.be.identity(b.domain)
+            a.linkFlairText.should.be.identity(b.linkFlairText)
+            a.authorFlairText.should.be.`null`
+
+            // Not annotated
+            a.title.should.not.be.identity(b.title)
+
+            pool.hits.should.equal(5L)
+            pool.misses.should.equal(5L)
+            pool.hitRate.should.equal(0.5)
+            pool.savedBytes.should.be.above(0L)
+        }
+    }
+
+    describe("StringPool") {
+        it("should stop adding Strings once it's full") {
+            val pool = StringPool(maxSize = 2)
+            pool.intern(String(charArrayOf('a')))
+            pool.intern(String(charArrayOf('b')))
+
+            val c = String(charArrayOf('c'))
+            pool.intern(c).should.be.identity(c)
+            pool.intern(String(charArrayOf('c'))).should.not.be.identity(c)
+            pool.size.should.equal(2)
+            pool.misses.should.equal(4L)
+        }
+
+        it("should reset its statistics when cleared") {
+            val pool = StringPool()
+            pool.intern("a")
+            pool.intern("a")
+            pool.clear()
+            pool.size.should.equal(0)
+            pool.hits.should.equal(0L)
+            pool.savedBytes.should.equal(0L)
+        }
+
+        it("should require a positive maxSize") {
+            expectException(IllegalArgumentException::class) { StringPool(maxSize = 0) }
+        }
+    }
+})
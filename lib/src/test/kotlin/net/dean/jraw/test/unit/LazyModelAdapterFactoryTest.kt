@@ -0,0 +1,111 @@
+package net.dean.jraw.test.unit
+
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.JsonWriter
+import com.squareup.moshi.Moshi
+import com.winterbe.expekt.should
+import net.dean.jraw.JrawUtils
+import net.dean.jraw.databind.Enveloped
+import net.dean.jraw.databind.LazyModelAdapterFactory
+import net.dean.jraw.models.Submission
+import okio.Buffer
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+
+class LazyModelAdapterFactoryTest : Spek({
+    val lazyMoshi = JrawUtils.addAdapters(Moshi.Builder().add(LazyModelAdapterFactory())).build()
+
+    fun submissionJson(preview: String, media: String) = """{"kind": "t3", "data": {
+        "archived": false, "author": "author", "author_flair_text": null, "can_gild": true, "contest_mode": false,
+        "created_utc": 1500000000, "distinguished": null, "domain": "v.redd.it", "edited": null, "secure_media": $media,
+        "name": "t3_abc", "gilded": 0, "gildings": {"gid_1": 0, "gid_2": 1, "gid_3": 0}, "hidden": false,
+        "hide_score": false, "id": "abc", "is_self": false, "link_flair_text": null, "link_flair_css_class": null,
+        "locked": false, "over_18": false, "permalink": "/r/pics/comments/abc/", "post_hint": "hosted:video",
+        "preview": $preview, "quarantine": false, "num_reports": null, "selftext": "", "spam": false,
+        "spoiler": false, "subreddit": "pics", "subreddit_id": "t5_2qh0u", "suggested_sort": null, "thumbnail": null,
+        "title": "title", "url": "https://v.redd.it/abc", "visited": false, "removed": false, "likes": null,
+        "num_comments": 0, "saved": false, "stickied": false, "score": 1
+    }}"""
+
+    val preview = """{"images": [{"id": "img", "source": {"url": "https://i.redd.it/abc.png?a=1&amp;b=2",
+        "width": 640, "height": 480}, "resolutions": [{"url": "https://i.redd.it/abc-small.png", "width": 108,
+        "height": 81}], "variants": {}}], "enabled": true}"""
+    val media = """{"reddit_video": {"fallback_url": "https://v.redd.it/abc/DASH_720", "height": 720, "width": 1280,
+        "scrubber_media_url": "https://v.redd.it/abc/DASH_240", "dash_url": "https://v.redd.it/abc/dash",
+        "duration": 42, "hls_url": "https://v.redd.it/abc/hls", "is_gif": false, "transcoding_status": "completed"}}"""
+    val json = submissionJson(preview, media)
+
+    fun parse(lazy: Boolean): Submission {
+        val moshi = if (lazy) lazyMoshi else JrawUtils.moshi
+        return moshi.adapter<Submission>(Submission::class.java, Enveloped::class.java).fromJson(json)!!
+    }
+
+    /** Copies the JSON value with [LazyModelAdapterFactory.copyValue] */
+    fun copy(json: String): String {
+        val buffer = Buffer()
+        JsonWriter.of(buffer).use { LazyModelAdapterFactory.copyValue(JsonReader.of(Buffer().writeUtf8(json)), it) }
+        return buffer.readUtf8()
+    }
+
+    describe("LazyModelAdapterFactory") {
+        it("should only be used by the Moshi instances it was added to") {
+            parse(lazy = true).preview!!.javaClass.simpleName.should.not.startWith("AutoValue_")
+
+            val submission = parse(lazy = false)
+            submission.preview!!.javaClass.simpleName.should.startWith("AutoValue_")
+            submission.embeddedMedia!!.javaClass.simpleName.should.startWith("AutoValue_")
+        }
+
+        it("should copy numbers without losing precision") {
+            copy("""{"big": 9007199254740993, "long": -9223372036854775808, "decimal": 1.10, "tiny": 1e-400}""")
+                .should.equal("""{"big":9007199254740993,"long":-9223372036854775808,"decimal":1.10,"tiny":1E-400}""")
+            copy("""[0, 2.5, true, null, "9007199254740993"]""")
+                .should.equal("""[0,2.5,true,null,"9007199254740993"]""")
+        }
+
+        it("should create objects equal to the eagerly decoded ones") {
+            val eager = parse(lazy = false)
+            val lazy = parse(lazy = true)
+
+            lazy.preview!!.javaClass.simpleName.should.not.startWith("AutoValue_")
+            lazy.preview!!.images[0].source.url.should.equal("https://i.redd.it/abc.png?a=1&amp;b=2")
+            lazy.preview!!.images[0].resolutions[0].width.should.equal(108)
+            lazy.embeddedMedia!!.redditVideo!!.duration.should.equal(42)
+            lazy.gildings.golds.should.equal(1)
+
+            lazy.preview.should.equal(eager.preview)
+            eager.preview.should.equal(lazy.preview)
+            lazy.embeddedMedia.should.equal(eager.embeddedMedia)
+            lazy.should.equal(eager)
+            lazy.hashCode().should.equal(eager.hashCode())
+        }
+
+        it("should keep null values null") {
+            val submission = lazyMoshi.adapter<Submission>(Submission::class.java, Enveloped::class.java)
+                .fromJson(submissionJson(preview = "null", media = "null"))!!
+            submission.preview.should.be.`null`
+            submission.embeddedMedia.should.be.`null`
+        }
+
+        it("should serialize the decoded objects") {
+            val lazy = parse(lazy = true)
+
+            val bytes = ByteArrayOutputStream()
+            ObjectOutputStream(bytes).use { it.writeObject(lazy) }
+            val copy = ObjectInputStream(ByteArrayInputStream(bytes.toByteArray())).use { it.readObject() } as Submission
+
+            copy.preview!!.javaClass.simpleName.should.startWith("AutoValue_")
+            copy.should.equal(parse(lazy = false))
+        }
+
+        it("should write the same JSON as the eagerly decoded objects") {
+            val dataAdapter = JrawUtils.adapter<Submission>()
+            dataAdapter.toJson(parse(lazy = true)).should.equal(dataAdapter.toJson(parse(lazy = false)))
+        }
+    }
+})
@@ -0,0 +1,106 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.ratelimit.LockFreeRateLimiter
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.properties.Delegates
+
+class LockFreeRateLimiterTest : Spek({
+    val time = MockTimeAdapter()
+    var rate: LockFreeRateLimiter by Delegates.notNull()
+    val capacity = 10L
+
+    beforeEachTest {
+        time.now = 0L
+        rate = LockFreeRateLimiter(capacity, 1, TimeUnit.SECONDS, time)
+    }
+
+    /** Runs [work] on [threads] threads at the same time and returns the sum of what they returned */
+    fun concurrently(threads: Int, work: () -> Long): Long {
+        val start = CountDownLatch(1)
+        val total = AtomicLong()
+        val workers = (0 until threads).map {
+            Thread {
+                start.await()
+                total.addAndGet(work())
+            }
+        }
+        workers.forEach { it.start() }
+        start.countDown()
+        workers.forEach { it.join() }
+        return total.get()
+    }
+
+    describe("tryAcquire") {
+        it("should start with no permits") {
+            rate.tryAcquire().should.be.`false`
+        }
+
+        it("should issue permits over time") {
+            time.advance(3, TimeUnit.SECONDS)
+            rate.availablePermits.should.equal(3L)
+            rate.tryAcquire(3).should.be.`true`
+            rate.tryAcquire().should.be.`false`
+        }
+
+        it("should not fill over capacity") {
+            time.advance(1, TimeUnit.DAYS)
+            rate.tryAcquire(capacity).should.be.`true`
+            rate.tryAcquire().should.be.`false`
+        }
+    }
+
+    describe("refill") {
+        it("should add permits up to capacity") {
+            rate.refill(4)
+            rate.availablePermits.should.equal(4L)
+
+            rate.refill(100)
+            rate.availablePermits.should.equal(capacity)
+        }
+    }
+
+    describe("concurrency") {
+        it("should never hand out more permits than it has") {
+            // Fill the bucket and freeze time
+            time.advance(1, TimeUnit.DAYS)
+
+            for (round in 0 until 20) {
+                val acquired = concurrently(threads = 16) {
+                    var count = 0L
+                    for (i in 0 until 1000)
+                        if (rate.tryAcquire()) count++
+                    count
+                }
+
+                // The first round starts with a full bucket, every round after that gets 5 more permits
+                acquired.should.equal(if (round == 0) capacity else 5L)
+                rate.availablePermits.should.equal(0L)
+
+                time.advance(5, TimeUnit.SECONDS)
+            }
+        }
+
+        it("should not exceed the rate when many threads block on acquire()") {
+            val permitsPerSecond = 1000L
+            val real = LockFreeRateLimiter(capacity, permitsPerSecond, TimeUnit.SECONDS)
+            val perThread = 25L
+            val threads = 8
+
+            val start = System.nanoTime()
+            concurrently(threads) {
+                for (i in 0 until perThread) real.acquire()
+                perThread
+            }.should.equal(perThread * threads)
+
+            // The bucket starts empty, so every permit had to be issued over time
+            val minimum = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond * perThread * threads
+            (System.nanoTime() - start).should.be.at.least(minimum)
+        }
+    }
+})
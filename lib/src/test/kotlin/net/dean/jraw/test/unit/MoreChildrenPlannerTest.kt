@@ -0,0 +1,105 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.RedditClient
+import net.dean.jraw.test.MockCommentsAdapter
+import net.dean.jraw.test.newMockRedditClient
+import net.dean.jraw.tree.CommentNode
+import net.dean.jraw.tree.CommentNode.Companion.NO_LIMIT
+import net.dean.jraw.tree.ExpansionPolicy
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import kotlin.properties.Delegates
+
+class MoreChildrenPlannerTest : Spek({
+    var adapter: MockCommentsAdapter by Delegates.notNull()
+    var reddit: RedditClient by Delegates.notNull()
+
+    fun ids(tree: CommentNode<*>) = tree.walkTree().drop(1).map { it.subject.id }.toList()
+
+    beforeEachTest {
+        adapter = MockCommentsAdapter()
+        reddit = newMockRedditClient(adapter)
+    }
+
+    describe("loadFully") {
+        it("should pack the IDs of many MoreChildren into one request") {
+            // 1 MoreChildren with 30 IDs, then 30 MoreChildren with 3 IDs each
+            val expected = adapter.addThread("a", 30, 3)
+            val tree = reddit.submission("a").comments()
+            tree.loadFully(reddit)
+
+            ids(tree).should.equal(expected)
+            adapter.moreChildrenRequests.get().should.equal(2)
+        }
+
+        it("should request the rest of a MoreChildren with more IDs than fit in one request") {
+            val expected = adapter.addThread("b", 250, 1)
+            val tree = reddit.submission("b").comments()
+            tree.loadFully(reddit)
+
+            ids(tree).should.equal(expected)
+            tree.walkTree().none { it.hasMoreChildren() }.should.be.`true`
+            // 250 top-level comments and 250 replies
+            adapter.moreChildrenRequests.get().should.equal(5)
+        }
+
+        it("should respect the request limit") {
+            adapter.addThread("c", 150, 1)
+            val tree = reddit.submission("c").comments()
+            tree.loadFully(reddit, NO_LIMIT, 1)
+
+            adapter.moreChildrenRequests.get().should.equal(1)
+            tree.replies.size.should.equal(100)
+            tree.hasMoreChildren().should.be.`true`
+        }
+
+        it("should respect the depth limit") {
+            adapter.addThread("d", 5, 2, 2)
+            val tree = reddit.submission("d").comments()
+            tree.loadFully(reddit, 1, NO_LIMIT)
+
+            // Nodes at depth 1 have been expanded, but not the ones below them
+            tree.walkTree().map { it.depth }.max().should.equal(2)
+            tree.walkTree().filter { it.hasMoreChildren() }.map { it.depth }.toSet().should.equal(setOf(2))
+        }
+    }
+
+    describe("loadFully with an ExpansionPolicy") {
+        beforeEachTest {
+            // 4 top-level comments with 60 replies each, only the ones at the top are sent with the submission
+            adapter.inlineDepth = 1
+            adapter.addThread("e", 4, 60)
+            adapter.scores["ex2"] = 100
+        }
+
+        it("should spend requests on the MoreChildren with the highest priority first") {
+            val tree = reddit.submission("e").comments()
+            tree.loadFully(reddit, NO_LIMIT, 1, ExpansionPolicy.HIGHEST_SCORE_FIRST)
+
+            adapter.moreChildrenRequests.get().should.equal(1)
+            tree.replies.map { it.subject.id to it.replies.size }.should.equal(listOf(
+                // The rest of the request is filled with the first comment's replies
+                "ex0" to 40, "ex1" to 0, "ex2" to 60, "ex3" to 0
+            ))
+            tree.replies[2].hasMoreChildren().should.be.`false`
+        }
+
+        it("should expand breadth-first by default") {
+            val tree = reddit.submission("e").comments()
+            tree.loadFully(reddit, NO_LIMIT, 1)
+
+            tree.replies.map { it.replies.size }.should.equal(listOf(60, 40, 0, 0))
+        }
+
+        it("should skip the MoreChildren the policy rejects") {
+            val tree = reddit.submission("e").comments()
+            tree.loadFully(reddit, NO_LIMIT, NO_LIMIT, ExpansionPolicy.minScore(10))
+
+            adapter.moreChildrenRequests.get().should.equal(1)
+            tree.replies.map { it.replies.size }.should.equal(listOf(0, 0, 60, 0))
+            tree.replies.map { it.hasMoreChildren() }.should.equal(listOf(true, true, false, true))
+        }
+    }
+})
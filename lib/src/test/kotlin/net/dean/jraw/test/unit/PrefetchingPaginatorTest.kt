@@ -0,0 +1,88 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.RedditClient
+import net.dean.jraw.models.WikiRevision
+import net.dean.jraw.pagination.BarebonesPaginator
+import net.dean.jraw.test.MockNetworkAdapter
+import net.dean.jraw.test.mockListing
+import net.dean.jraw.test.newMockRedditClient
+import okhttp3.mockwebserver.MockResponse
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.it
+import java.util.concurrent.TimeUnit
+import kotlin.properties.Delegates
+
+class PrefetchingPaginatorTest : Spek({
+    var mockAdapter: MockNetworkAdapter by Delegates.notNull()
+    var reddit: RedditClient by Delegates.notNull()
+
+    fun paginator() = BarebonesPaginator.Builder.create<WikiRevision>(reddit, "/wiki/revisions").build()
+
+    fun waitForRequests(count: Int) {
+        val deadline = System.currentTimeMillis() + 5000
+        while (mockAdapter.mockServer.requestCount < count) {
+            if (System.currentTimeMillis() > deadline)
+                throw IllegalStateException("Expected $count requests, got ${mockAdapter.mockServer.requestCount}")
+            Thread.sleep(10)
+        }
+    }
+
+    beforeEachTest {
+        mockAdapter = MockNetworkAdapter()
+        mockAdapter.start()
+        reddit = newMockRedditClient(mockAdapter)
+    }
+
+    it("should return the same pages as the paginator it wraps") {
+        mockAdapter.enqueue(mockListing("a2", "a1", "a2"))
+        mockAdapter.enqueue(mockListing("b2", "b1", "b2"))
+        mockAdapter.enqueue(mockListing(null, "c1"))
+
+        val pages = paginator().prefetching(depth = 2).accumulate(-1)
+        pages.map { page -> page.children.map { it.id } }.should.equal(listOf(
+            listOf("a1", "a2"),
+            listOf("b1", "b2"),
+            listOf("c1")
+        ))
+        mockAdapter.mockServer.requestCount.should.equal(3)
+    }
+
+    it("should request the next pages before they're asked for") {
+        mockAdapter.enqueue(mockListing("a1", "a1"))
+        mockAdapter.enqueue(mockListing("b1", "b1"))
+        mockAdapter.enqueue(mockListing("c1", "c1"))
+
+        val p = paginator().prefetching(depth = 2)
+        p.next().children.map { it.id }.should.equal(listOf("a1"))
+
+        // The next two pages should be requested without calling next()
+        waitForRequests(3)
+        p.pageNumber.should.equal(1)
+        p.next().children.map { it.id }.should.equal(listOf("b1"))
+        p.pageNumber.should.equal(2)
+        p.current!!.nextName.should.equal("b1")
+    }
+
+    it("should discard prefetched pages when restarted") {
+        mockAdapter.enqueue(mockListing("a1", "a1"))
+        // This page is still being fetched when restart() is called
+        mockAdapter.mockServer.enqueue(MockResponse()
+            .setBody(mockListing("b1", "b1"))
+            .setHeader("Content-Type", "application/json")
+            .setBodyDelay(1, TimeUnit.SECONDS))
+        mockAdapter.enqueue(mockListing("a1", "first page again"))
+
+        val p = paginator().prefetching()
+        p.next()
+        waitForRequests(2)
+
+        p.restart()
+        p.hasStarted().should.be.`false`
+        p.next().children.map { it.id }.should.equal(listOf("first page again"))
+    }
+
+    afterEachTest {
+        mockAdapter.reset()
+    }
+})
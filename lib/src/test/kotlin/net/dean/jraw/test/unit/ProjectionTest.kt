@@ -0,0 +1,84 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.RedditClient
+import net.dean.jraw.models.Projection
+import net.dean.jraw.models.Submission
+import net.dean.jraw.pagination.BarebonesPaginator
+import net.dean.jraw.test.MockNetworkAdapter
+import net.dean.jraw.test.expectException
+import net.dean.jraw.test.newMockRedditClient
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import java.util.*
+import kotlin.properties.Delegates
+
+class ProjectionTest : Spek({
+    var mockAdapter: MockNetworkAdapter by Delegates.notNull()
+    var reddit: RedditClient by Delegates.notNull()
+    val projection = Projection("score", "num_comments", "created_utc")
+
+    fun post(id: String, score: Int) = """{"kind": "t3", "data": {"name": "t3_$id", "id": "$id", "score": $score,
+        "num_comments": 3, "created_utc": 1500000000.0, "title": "title of $id", "selftext": "a long body",
+        "preview": {"images": [{"source": {"url": "https://i.redd.it/$id.png", "width": 10, "height": 10}}]},
+        "gildings": {"gid_1": 0}, "media": null}}"""
+
+    fun listing(after: String?, vararg posts: String) =
+        """{"kind": "Listing", "data": {"after": ${if (after == null) "null" else "\"$after\""}, "children": [${posts.joinToString(",")}]}}"""
+
+    beforeEachTest {
+        mockAdapter = MockNetworkAdapter()
+        mockAdapter.start()
+        reddit = newMockRedditClient(mockAdapter)
+    }
+
+    afterEachTest {
+        mockAdapter.reset()
+    }
+
+    describe("Projection") {
+        it("should always include the fullname") {
+            projection.fields.should.equal(setOf("name", "score", "num_comments", "created_utc"))
+        }
+    }
+
+    describe("ProjectingPaginator") {
+        it("should read only the projected properties of every page") {
+            mockAdapter.enqueue(listing("t3_b", post("a", 10), post("b", 20)))
+            mockAdapter.enqueue(listing(null, post("c", 30)))
+
+            val paginator = BarebonesPaginator.Builder.create<Submission>(reddit, "/r/pics/new").build()
+                .project(projection)
+            val items = paginator.accumulateMerged(-1)
+
+            items.map { it.fullName }.should.equal(listOf("t3_a", "t3_b", "t3_c"))
+            items.map { it.getInt("score") }.should.equal(listOf(10, 20, 30))
+            items[0].kind.should.equal("t3")
+            items[0].getLong("num_comments").should.equal(3L)
+            items[0].getDate("created_utc").should.equal(Date(1500000000L * 1000))
+            items[0].has("score").should.be.`true`
+
+            mockAdapter.mockServer.requestCount.should.equal(2)
+            paginator.pageNumber.should.equal(2)
+        }
+
+        it("should not allow reading properties outside of the projection") {
+            mockAdapter.enqueue(listing(null, post("a", 10)))
+            val item = BarebonesPaginator.Builder.create<Submission>(reddit, "/r/pics/new").build()
+                .project(projection).next().first()
+
+            expectException(IllegalArgumentException::class) {
+                item.getString("title")
+            }
+        }
+    }
+
+    describe("lookup") {
+        it("should read the projected properties") {
+            mockAdapter.enqueue(listing(null, post("a", 10)))
+            val found = reddit.lookup(listOf("t3_a"), projection)
+            found.map { it.getInt("score") }.should.equal(listOf(10))
+        }
+    }
+})
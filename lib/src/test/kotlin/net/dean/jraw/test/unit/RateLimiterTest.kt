@@ -1,18 +1,18 @@
 package net.dean.jraw.test.unit
 
 import com.winterbe.expekt.should
-import net.dean.jraw.ratelimit.FixedIntervalRefillStrategy
-import net.dean.jraw.ratelimit.LeakyBucketRateLimiter
-import net.dean.jraw.ratelimit.RateLimiter
-import net.dean.jraw.ratelimit.TimeAdapter
+import net.dean.jraw.ratelimit.*
 import org.jetbrains.spek.api.Spek
 import org.jetbrains.spek.api.dsl.describe
 import org.jetbrains.spek.api.dsl.it
+import java.util.*
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
 import kotlin.properties.Delegates
 
 class RateLimiterTest : Spek({
-    var rate: RateLimiter by Delegates.notNull()
+    var rate: AbstractRateLimiter by Delegates.notNull()
     val time = MockTimeAdapter()
 
     // Have up to 10 permits
@@ -58,6 +58,147 @@ class RateLimiterTest : Spek({
             rate.tryAcquire(1).should.be.`false`
         }
     }
+
+    describe("waiting for permits") {
+        fun waitForWaitingThreads(count: Int) {
+            val deadline = System.currentTimeMillis() + 5000
+            while (rate.waitingThreads != count) {
+                if (System.currentTimeMillis() > deadline)
+                    throw IllegalStateException("Expected $count threads to be waiting")
+                Thread.sleep(1)
+            }
+        }
+
+        it("should give up once the timeout has elapsed") {
+            val start = System.nanoTime()
+            rate.tryAcquire(1, 50, TimeUnit.MILLISECONDS).should.be.`false`
+            (System.nanoTime() - start).should.be.at.least(TimeUnit.MILLISECONDS.toNanos(50))
+        }
+
+        it("should wake up a waiting thread when permits are added") {
+            val t = Thread { rate.acquire() }
+            t.start()
+            waitForWaitingThreads(1)
+
+            rate.refill(1)
+            t.join(5000)
+            t.isAlive.should.be.`false`
+            rate.tryAcquire().should.be.`false`
+        }
+
+        it("should hand out permits in the order they were requested") {
+            val order = Collections.synchronizedList(mutableListOf<Int>())
+            val threads = (0 until 5).map { i ->
+                val t = Thread {
+                    rate.acquire()
+                    order.add(i)
+                }
+                t.start()
+                // Make sure threads line up in a known order
+                waitForWaitingThreads(i + 1)
+                t
+            }
+
+            for (i in threads.indices) {
+                rate.refill(1)
+                threads[i].join(5000)
+            }
+
+            order.should.equal((0 until 5).toList())
+        }
+
+        it("should not call tryAcquire from several threads at once unless it's thread-safe") {
+            val inside = AtomicInteger()
+            val maxInside = AtomicInteger()
+            val limiter = object : AbstractRateLimiter() {
+                override fun tryAcquire(permits: Long): Boolean {
+                    maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max)
+                    Thread.sleep(2)
+                    inside.decrementAndGet()
+                    return true
+                }
+                override fun refill(permits: Long) {}
+            }
+
+            (0 until 8).map { thread { limiter.acquire() } }.forEach { it.join(5000) }
+            maxInside.get().should.equal(1)
+        }
+
+        it("should stop waiting when interrupted") {
+            var thrown: Throwable? = null
+            val t = Thread {
+                try {
+                    rate.tryAcquire(1, 1, TimeUnit.MINUTES)
+                } catch (e: InterruptedException) {
+                    thrown = e
+                }
+            }
+            t.start()
+            waitForWaitingThreads(1)
+
+            t.interrupt()
+            t.join(5000)
+            thrown.should.be.instanceof(InterruptedException::class.java)
+        }
+    }
+})
+
+class AdaptiveRateLimiterTest : Spek({
+    val time = MockTimeAdapter()
+    var rate: AdaptiveRateLimiter by Delegates.notNull()
+
+    beforeEachTest {
+        time.now = 0L
+        rate = AdaptiveRateLimiter(burst = 1, defaultLimit = 600, defaultWindow = 600, timeAdapter = time)
+    }
+
+    it("should assume the default limit before hearing from reddit") {
+        rate.tryAcquire().should.be.`true`
+        rate.tryAcquire().should.be.`false`
+
+        // 600 requests per 600 seconds => 1 per second
+        time.advance(999, TimeUnit.MILLISECONDS)
+        rate.tryAcquire().should.be.`false`
+        time.advance(1, TimeUnit.MILLISECONDS)
+        rate.tryAcquire().should.be.`true`
+    }
+
+    it("should spread the reported remaining requests over the rest of the window") {
+        rate.update(RateLimitStatus(remaining = 100.0, used = 500, resetSeconds = 10))
+
+        // 100 requests in 10 seconds => one every 100ms
+        rate.tryAcquire().should.be.`true`
+        rate.tryAcquire().should.be.`false`
+        time.advance(100, TimeUnit.MILLISECONDS)
+        rate.tryAcquire().should.be.`true`
+    }
+
+    it("should not hand out permits once the budget is spent") {
+        rate.update(RateLimitStatus(remaining = 1.0, used = 599, resetSeconds = 10))
+        rate.tryAcquire().should.be.`true`
+
+        time.advance(9, TimeUnit.SECONDS)
+        rate.tryAcquire().should.be.`false`
+
+        // The window has been reset
+        time.advance(1, TimeUnit.SECONDS)
+        rate.tryAcquire().should.be.`true`
+        rate.remainingPermits.should.equal(599.0)
+    }
+
+    it("should not let an out-of-date report raise the remaining count") {
+        rate.update(RateLimitStatus(remaining = 50.0, used = 550, resetSeconds = 100))
+        rate.update(RateLimitStatus(remaining = 60.0, used = 540, resetSeconds = 100))
+        rate.remainingPermits.should.equal(50.0)
+    }
+
+    it("should allow bursting") {
+        rate = AdaptiveRateLimiter(burst = 3, defaultLimit = 600, defaultWindow = 600, timeAdapter = time)
+        time.advance(10, TimeUnit.SECONDS)
+        for (i in 0 until 3)
+            rate.tryAcquire().should.be.`true`
+        rate.tryAcquire().should.be.`false`
+    }
 })
 
 class MockTimeAdapter : TimeAdapter {
@@ -0,0 +1,50 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.JrawUtils
+import net.dean.jraw.models.internal.GenericJsonResponse
+import net.dean.jraw.models.internal.ObjectBasedApiExceptionStub
+import net.dean.jraw.models.internal.RedditExceptionStub
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+
+class RedditExceptionStubAdapterFactoryTest : Spek({
+    val adapter = JrawUtils.adapter<RedditExceptionStub<*>>().lenient()
+
+    describe("fromJson") {
+        it("should find object-based errors") {
+            val stub = adapter.fromJson("""{"fields": ["multipath"], "explanation": "you can't change that multireddit",
+                "message": "Forbidden", "reason": "MULTI_CANNOT_EDIT", "other": {"a": [1, 2, 3]}}""")
+            stub.should.be.instanceof(ObjectBasedApiExceptionStub::class.java)
+            val objectBased = stub as ObjectBasedApiExceptionStub
+            objectBased.code.should.equal("MULTI_CANNOT_EDIT")
+            objectBased.relevantFields.should.equal(listOf("multipath"))
+
+            adapter.fromJson("""{"message": "Forbidden", "error": 403}""")
+                .should.be.instanceof(ObjectBasedApiExceptionStub::class.java)
+        }
+
+        it("should find errors in a 'json' object while skipping its data") {
+            val stub = adapter.fromJson("""{"json": {"data": {"things": [{"kind": "t1"}]}, "errors": [["SUBREDDIT_NOEXIST",
+                "that subreddit doesn't exist", "sr"]]}}""")
+            stub.should.be.instanceof(GenericJsonResponse::class.java)
+            (stub as GenericJsonResponse).json!!.errors.should.equal(listOf(listOf("SUBREDDIT_NOEXIST",
+                "that subreddit doesn't exist", "sr")))
+
+            (adapter.fromJson("""{"json": {"ratelimit": 5.5, "errors": []}}""") as GenericJsonResponse)
+                .json!!.ratelimit.should.equal(5.5)
+        }
+
+        it("should return null when there is no error") {
+            adapter.fromJson("""{"json": {"errors": [], "data": {"things": []}}}""").should.be.`null`
+            adapter.fromJson("""{"foo": "bar", "json": 5}""").should.be.`null`
+            adapter.fromJson("""[{"kind": "Listing", "data": {}}, {"message": "not an error"}]""").should.be.`null`
+        }
+
+        it("should not look into enveloped models") {
+            // "message" would make this look like an error if the adapter kept going after "kind"
+            adapter.fromJson("""{"kind": "Listing", "data": {"children": []}, "message": "Forbidden"}""").should.be.`null`
+        }
+    }
+})
@@ -0,0 +1,73 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.RedditClient
+import net.dean.jraw.models.WikiRevision
+import net.dean.jraw.pagination.BarebonesPaginator
+import net.dean.jraw.test.MockNetworkAdapter
+import net.dean.jraw.test.mockListing
+import net.dean.jraw.test.newMockRedditClient
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import java.util.function.Predicate
+import java.util.stream.Collectors
+import kotlin.properties.Delegates
+
+class RedditIterableItemsTest : Spek({
+    var mockAdapter: MockNetworkAdapter by Delegates.notNull()
+    var reddit: RedditClient by Delegates.notNull()
+
+    fun paginator() = BarebonesPaginator.Builder.create<WikiRevision>(reddit, "/wiki/revisions").build()
+
+    beforeEachTest {
+        mockAdapter = MockNetworkAdapter()
+        mockAdapter.start()
+        reddit = newMockRedditClient(mockAdapter)
+
+        mockAdapter.enqueue(mockListing("a2", "a1", "a2"))
+        // Empty pages in the middle shouldn't end iteration
+        mockAdapter.enqueue(mockListing("a2"))
+        mockAdapter.enqueue(mockListing("b2", "b1", "b2"))
+        mockAdapter.enqueue(mockListing(null, "c1"))
+    }
+
+    describe("items") {
+        it("should iterate every item on every page") {
+            paginator().items().asSequence().map { it.id }.toList().should.equal(listOf("a1", "a2", "b1", "b2", "c1"))
+            mockAdapter.mockServer.requestCount.should.equal(4)
+        }
+
+        it("should only request pages as they're needed") {
+            val it = paginator().items()
+            it.next().id.should.equal("a1")
+            mockAdapter.mockServer.requestCount.should.equal(1)
+            it.next().id.should.equal("a2")
+            mockAdapter.mockServer.requestCount.should.equal(1)
+            it.next().id.should.equal("b1")
+            mockAdapter.mockServer.requestCount.should.equal(3)
+        }
+    }
+
+    describe("itemStream") {
+        it("should stop requesting pages once a short-circuiting operation is done") {
+            paginator().itemStream().filter { it.id.startsWith("b") }.findFirst().get().id.should.equal("b1")
+            mockAdapter.mockServer.requestCount.should.equal(3)
+        }
+    }
+
+    describe("itemStreamWhile") {
+        it("should end at the first item that doesn't match") {
+            paginator().itemStreamWhile(Predicate { it.id.startsWith("a") })
+                .map { it.id }
+                .collect(Collectors.toList()).should.equal(listOf("a1", "a2"))
+
+            // Everything on the second page (which was empty) and the third had to be checked
+            mockAdapter.mockServer.requestCount.should.equal(3)
+        }
+    }
+
+    afterEachTest {
+        mockAdapter.reset()
+    }
+})
@@ -236,6 +236,25 @@ class RedditModelAdapterFactoryTest : Spek({
                 adapter.fromJson("""{ "kind": "child", "data": { "a": "some value" } }""").should.equal(Child("some value"))
             }
 
+            it("should still work when 'data' comes before 'kind'") {
+                val adapter = moshi(registry = registry(Child::class))
+                    .adapter<Parent>(Parent::class.java, Enveloped::class.java) as RedditModelAdapterFactory.DynamicAdapter
+
+                adapter.fromJson("""{ "data": { "a": "some value" }, "other": 1, "kind": "child" }""").should.equal(Child("some value"))
+            }
+
+            it("should throw a JsonDataException if 'data' is missing or null") {
+                val adapter = moshi(registry = registry(Child::class))
+                    .adapter<Parent>(Parent::class.java, Enveloped::class.java) as RedditModelAdapterFactory.DynamicAdapter
+
+                expectException(JsonDataException::class) {
+                    adapter.fromJson("""{ "kind": "child" }""")
+                }
+                expectException(JsonDataException::class) {
+                    adapter.fromJson("""{ "kind": "child", "data": null }""")
+                }
+            }
+
             it("should ensure the deserialized type is the same as or is a subclass of the upper bound") {
                 // OtherModel's superclass is Object, so trying to deserialize these guys as Parent objects
                 // should cause a problem
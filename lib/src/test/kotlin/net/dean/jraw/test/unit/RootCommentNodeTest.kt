@@ -0,0 +1,98 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.RedditClient
+import net.dean.jraw.test.MockCommentsAdapter
+import net.dean.jraw.test.expectException
+import net.dean.jraw.test.newMockRedditClient
+import net.dean.jraw.tree.ReplyCommentNode
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import kotlin.properties.Delegates
+
+class RootCommentNodeTest : Spek({
+    var adapter: MockCommentsAdapter by Delegates.notNull()
+    var reddit: RedditClient by Delegates.notNull()
+
+    beforeEachTest {
+        adapter = MockCommentsAdapter()
+        reddit = newMockRedditClient(adapter)
+    }
+
+    describe("findByFullName") {
+        it("should find every node in the tree") {
+            val ids = adapter.addThread("a", 10, 3, 2)
+            val tree = reddit.submission("a").comments()
+            tree.loadFully(reddit)
+
+            tree.findByFullName("t3_a").should.equal(tree)
+            for (node in tree.walkTree().drop(1))
+                tree.findByFullName(node.subject.fullName).should.equal(node)
+            ids.forEach { tree.findByFullName("t1_$it").should.not.be.`null` }
+            tree.findByFullName("t1_doesnotexist").should.be.`null`
+        }
+
+        it("should not include nodes that were only loaded with loadMore()") {
+            val ids = adapter.addThread("b", 10)
+            val tree = reddit.submission("b").comments()
+            tree.loadMore(reddit).replies.size.should.equal(10)
+            tree.findByFullName("t1_${ids[0]}").should.be.`null`
+        }
+
+        it("should handle lots of replies to the same node") {
+            val ids = adapter.addThread("c", 10_000)
+            val tree = reddit.submission("c").comments()
+            tree.loadFully(reddit)
+
+            tree.replies.size.should.equal(ids.size)
+            tree.findByFullName("t1_${ids.last()}")!!.parent.should.equal(tree)
+        }
+    }
+
+    describe("addReply") {
+        it("should replace duplicate replies") {
+            adapter.addThread("d", 2, 2)
+            val tree = reddit.submission("d").comments()
+            tree.loadFully(reddit)
+
+            val first = tree.replies[0] as ReplyCommentNode
+            val child = first.replies[0]
+            val replacement = tree.addReply(first.subject)
+
+            tree.replies.size.should.equal(2)
+            tree.replies.last().should.equal(replacement)
+            tree.findByFullName(first.subject.fullName).should.equal(replacement)
+            // The old node's children went with it
+            tree.findByFullName(child.subject.fullName).should.be.`null`
+        }
+
+        it("should move duplicate replies that show up under a different parent") {
+            adapter.addThread("e", 2, 2)
+            val tree = reddit.submission("e").comments()
+            tree.loadFully(reddit)
+
+            val (first, second) = tree.replies.map { it as ReplyCommentNode }
+            val moved = first.replies[0]
+            val replacement = second.addReply(moved.subject)
+
+            first.replies.size.should.equal(1)
+            second.replies.last().should.equal(replacement)
+            tree.findByFullName(moved.subject.fullName).should.equal(replacement)
+            tree.totalSize().should.equal(tree.walkTree().count() - 1)
+            first.totalSize().should.equal(1)
+            second.totalSize().should.equal(3)
+        }
+
+        it("should not add a comment as a reply to one of its own replies") {
+            adapter.addThread("f", 1, 1)
+            val tree = reddit.submission("f").comments()
+            tree.loadFully(reddit)
+
+            val parent = tree.replies[0]
+            expectException(IllegalStateException::class) {
+                (parent.replies[0] as ReplyCommentNode).addReply(parent.subject)
+            }
+        }
+    }
+})
@@ -0,0 +1,76 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.ratelimit.SharedFileRateLimiter
+import net.dean.jraw.test.expectException
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.it
+import java.io.File
+import java.util.concurrent.TimeUnit
+import kotlin.properties.Delegates
+
+class SharedFileRateLimiterTest : Spek({
+    val time = MockTimeAdapter()
+    var file: File by Delegates.notNull()
+    val opened = mutableListOf<SharedFileRateLimiter>()
+
+    fun open(): SharedFileRateLimiter {
+        val rate = SharedFileRateLimiter(file, 5, 1, TimeUnit.SECONDS, time)
+        opened.add(rate)
+        return rate
+    }
+
+    beforeEachTest {
+        // Use a realistic wall clock time
+        time.now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis())
+        file = File.createTempFile("jraw-ratelimit", null)
+        file.delete()
+    }
+
+    it("should start with no permits") {
+        open().tryAcquire().should.be.`false`
+    }
+
+    it("should share its budget with other instances using the same file") {
+        val a = open()
+        val b = open()
+
+        time.advance(5, TimeUnit.SECONDS)
+        a.tryAcquire(3).should.be.`true`
+        b.availablePermits.should.equal(2L)
+        b.tryAcquire(2).should.be.`true`
+        a.tryAcquire().should.be.`false`
+        b.tryAcquire().should.be.`false`
+    }
+
+    it("should remember the budget across restarts") {
+        val a = open()
+        time.advance(5, TimeUnit.SECONDS)
+        a.tryAcquire(5).should.be.`true`
+        a.close()
+
+        // A new instance (e.g. in a process that was just restarted) shouldn't get a fresh set of permits
+        val b = open()
+        b.tryAcquire().should.be.`false`
+        time.advance(1, TimeUnit.SECONDS)
+        b.tryAcquire().should.be.`true`
+    }
+
+    it("should close the file when it can't be used") {
+        // The right magic number ("JRAW") but a version from the future
+        file.writeBytes(byteArrayOf(0x4A, 0x52, 0x41, 0x57, 0, 0, 0, 99) + ByteArray(8))
+
+        // Only Linux lets us count the open file descriptors
+        val fds = File("/proc/self/fd")
+        val before = fds.list()?.size
+
+        expectException(IllegalStateException::class) { open() }
+        fds.list()?.size.should.equal(before)
+    }
+
+    afterEachTest {
+        opened.forEach { it.close() }
+        opened.clear()
+        file.delete()
+    }
+})
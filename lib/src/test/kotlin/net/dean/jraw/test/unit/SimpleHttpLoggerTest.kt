@@ -87,6 +87,20 @@ class SimpleHttpLoggerTest : Spek({
         logAdapter.output().forEach { it.should.have.length.above(100) }
     }
 
+    it("should not consume the response body when truncating") {
+        // Lots of newlines that will be stripped, so more of the body has to be read than maxLineLength bytes
+        val json = """{${"\n".repeat(200)}"foo": "${"bar".repeat(100)}"}"""
+        mockAdapter.enqueue(json)
+        val res = reddit.request { it.url("http://example.com/foo") }
+
+        val output = logAdapter.output()
+        output[1].should.have.length(120)
+        output[1].should.endWith(SimpleHttpLogger.ELLIPSIS)
+        output[1].should.contain(""""foo": "barbar""")
+
+        res.deserialize<Map<String, String>>().should.equal(mapOf("foo" to "bar".repeat(100)))
+    }
+
     it("should throw an IllegalArgumentException if given a maxLineLength between 0 and ELLIPSIS.length") {
         for (i in 0..SimpleHttpLogger.ELLIPSIS.length) {
             expectException(IllegalArgumentException::class) {
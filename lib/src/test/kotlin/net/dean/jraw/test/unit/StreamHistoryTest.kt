@@ -0,0 +1,105 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.pagination.BoundedLongSet
+import net.dean.jraw.pagination.RotatingBloomFilter
+import net.dean.jraw.pagination.StreamHistory
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import java.util.*
+
+class StreamHistoryTest : Spek({
+    describe("BoundedLongSet") {
+        it("should evict the oldest element once full") {
+            val set = BoundedLongSet(capacity = 5)
+            for (i in 1L..5L)
+                set.add(i).should.equal(BoundedLongSet.EMPTY)
+            set.size.should.equal(5)
+
+            set.add(42).should.equal(1L)
+            set.contains(1).should.be.`false`
+            set.contains(42).should.be.`true`
+            set.size.should.equal(5)
+        }
+
+        it("should not add duplicates") {
+            val set = BoundedLongSet(capacity = 2)
+            set.add(1)
+            set.add(1)
+            set.size.should.equal(1)
+        }
+
+        it("should behave like a bounded insertion-ordered set") {
+            val capacity = 100
+            val set = BoundedLongSet(capacity)
+            val reference = LinkedHashSet<Long>()
+            val random = Random(0)
+
+            // Use a small key space so there are lots of collisions, duplicates, and evictions
+            for (i in 0 until 100_000) {
+                val key = 1 + random.nextInt(300).toLong()
+                set.contains(key).should.equal(reference.contains(key))
+
+                if (reference.add(key) && reference.size > capacity) {
+                    val eldest = reference.iterator().next()
+                    reference.remove(eldest)
+                    set.add(key).should.equal(eldest)
+                } else {
+                    set.add(key)
+                }
+            }
+        }
+    }
+
+    describe("encodeFullName") {
+        it("should decode base 36 fullnames into unique longs") {
+            val a = StreamHistory.encodeFullName("t3_8xwlg9")!!
+            a.should.not.equal(StreamHistory.encodeFullName("t1_8xwlg9"))
+            a.should.not.equal(StreamHistory.encodeFullName("t3_8xwlga"))
+            (a and ((1L shl 57) - 1)).should.equal(java.lang.Long.parseLong("8xwlg9", 36))
+        }
+
+        it("should return null for anything that isn't a fullname") {
+            for (id in listOf("", "abc", "t3_", "t3_ABC", "t3_00a", "x3_abc", "t0_abc", "t3_a-b", "t3_" + "z".repeat(12)))
+                StreamHistory.encodeFullName(id).should.be.`null`
+        }
+    }
+
+    describe("StreamHistory") {
+        it("should remember fullnames and other IDs") {
+            val history = StreamHistory(historySize = 2)
+            history.add("t3_abc")
+            history.add("some other id")
+            history.contains("t3_abc").should.be.`true`
+            history.contains("some other id").should.be.`true`
+            history.contains("t3_abd").should.be.`false`
+        }
+
+        it("should fall back to the Bloom filter for older IDs") {
+            val history = StreamHistory(historySize = 10, bloomFilterSize = 1000, falsePositiveRate = 0.01)
+            for (i in 1..500) history.add("t3_${i.toString(36)}")
+            for (i in 1..500) history.contains("t3_${i.toString(36)}").should.be.`true`
+
+            // Without the Bloom filter, only the last 10 would be remembered
+            val exact = StreamHistory(historySize = 10)
+            for (i in 1..500) exact.add("t3_${i.toString(36)}")
+            exact.contains("t3_${1.toString(36)}").should.be.`false`
+        }
+    }
+
+    describe("RotatingBloomFilter") {
+        it("should roughly respect the false positive rate") {
+            val expected = 10_000
+            val filter = RotatingBloomFilter(expected, falsePositiveRate = 0.01)
+            for (i in 0 until expected / 2) filter.add(i.toLong())
+
+            var falsePositives = 0
+            val trials = 100_000
+            for (i in 0 until trials)
+                if (filter.mightContain(1_000_000L + i)) falsePositives++
+
+            (falsePositives.toDouble() / trials).should.be.below(0.02)
+        }
+    }
+})
@@ -0,0 +1,112 @@
+package net.dean.jraw.test.unit
+
+import com.winterbe.expekt.should
+import net.dean.jraw.test.MockCommentsAdapter
+import net.dean.jraw.test.newMockRedditClient
+import net.dean.jraw.tree.*
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.it
+import kotlin.properties.Delegates
+
+class TreeTraverserTest : Spek({
+    var tree: RootCommentNode by Delegates.notNull()
+
+    fun ids(nodes: Sequence<CommentNode<*>>) = nodes.map { it.subject.id }.toList()
+
+    fun preOrder(node: CommentNode<*>): List<CommentNode<*>> = listOf(node) + node.replies.flatMap { preOrder(it) }
+    fun postOrder(node: CommentNode<*>): List<CommentNode<*>> = node.replies.flatMap { postOrder(it) } + listOf(node)
+
+    fun visitor(visit: (CommentNode<*>) -> CommentVisitor.Result) = object : CommentVisitor {
+        override fun visit(node: CommentNode<*>) = visit(node)
+    }
+
+    beforeEachTest {
+        val adapter = MockCommentsAdapter()
+        adapter.inlineDepth = 2
+        adapter.addThread("a", 4, 3, 2)
+        val reddit = newMockRedditClient(adapter)
+        tree = reddit.submission("a").comments()
+        tree.loadFully(reddit)
+    }
+
+    describe("traverse") {
+        it("should walk the tree in pre-order") {
+            ids(tree.walkTree(TreeTraversalOrder.PRE_ORDER)).should.equal(ids(preOrder(tree).asSequence()))
+        }
+
+        it("should walk the tree in post-order") {
+            ids(tree.walkTree(TreeTraversalOrder.POST_ORDER)).should.equal(ids(postOrder(tree).asSequence()))
+            tree.walkTree(TreeTraversalOrder.POST_ORDER).first().subject.id.should.equal("ax0x0x0")
+        }
+
+        it("should walk the tree breadth-first") {
+            val depths = tree.walkTree(TreeTraversalOrder.BREADTH_FIRST).map { it.depth }.toList()
+            depths.should.equal(depths.sorted())
+            depths.size.should.equal(tree.totalSize() + 1)
+        }
+
+        it("should include replies that are loaded while walking the tree") {
+            val adapter = MockCommentsAdapter()
+            adapter.inlineDepth = 1
+            adapter.addThread("a", 2, 2, 2)
+            val reddit = newMockRedditClient(adapter)
+
+            for (order in listOf(TreeTraversalOrder.PRE_ORDER, TreeTraversalOrder.BREADTH_FIRST)) {
+                val partial = reddit.submission("a").comments()
+                val walked = partial.walkTree(order).map {
+                    if (it.hasMoreChildren()) it.replaceMore(reddit)
+                    it.subject.id
+                }.toList()
+
+                partial.totalSize().should.equal(2 + 2 * 2 + 2 * 2 * 2)
+                walked.should.equal(ids(partial.walkTree(order)))
+            }
+        }
+
+        it("should work on a single node") {
+            val leaf = preOrder(tree).last()
+            for (order in TreeTraversalOrder.values())
+                leaf.walkTree(order).toList().should.equal(listOf(leaf))
+        }
+    }
+
+    describe("visit") {
+        it("should visit every node when told to continue") {
+            val visited = mutableListOf<CommentNode<*>>()
+            tree.visit(visitor { visited.add(it); CommentVisitor.Result.CONTINUE }).should.be.`true`
+            visited.should.equal(preOrder(tree))
+        }
+
+        it("should skip subtrees") {
+            val visited = mutableListOf<CommentNode<*>>()
+            tree.visit(visitor {
+                visited.add(it)
+                if (it.depth == 1) CommentVisitor.Result.SKIP_SUBTREE else CommentVisitor.Result.CONTINUE
+            }).should.be.`true`
+            visited.should.equal(listOf<CommentNode<*>>(tree) + tree.replies)
+        }
+
+        it("should stop early") {
+            var count = 0
+            tree.visit(visitor {
+                if (++count == 5) CommentVisitor.Result.STOP else CommentVisitor.Result.CONTINUE
+            }).should.be.`false`
+            count.should.equal(5)
+        }
+    }
+
+    describe("totalSize") {
+        it("should stay up to date as the tree changes") {
+            tree.totalSize().should.equal(4 + 4 * 3 + 4 * 3 * 2)
+            for (node in tree.walkTree())
+                node.totalSize().should.equal(node.walkTree().count() - 1)
+
+            // Replacing a node with one that only has the replies its comment was listed with
+            val first = tree.replies[0]
+            val replaced = tree.addReply(first.subject)
+            replaced.totalSize().should.be.below(first.totalSize())
+            tree.totalSize().should.equal(4 + 4 * 3 + 4 * 3 * 2 - first.totalSize() + replaced.totalSize())
+        }
+    }
+})